@@ -25,9 +25,12 @@
 package com.pluginpresets;
 
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Getter;
-import lombok.Setter;
 
 /**
  * Helper class that retrieves the user's current set of configs periodically
@@ -38,10 +41,20 @@ public class CurrentConfigurations
 
 	private final PluginPresetsCurrentConfigManager currentConfigManager;
 
+	/**
+	 * Read only, the configs are replaced on update and are not changed in place.
+	 */
 	@Getter
-	@Setter
 	private List<PluginConfig> pluginConfigs;
 
+	private Map<String, PluginConfig> configsByName = Collections.emptyMap();
+
+	/**
+	 * Incremented every time the configs are replaced.
+	 */
+	@Getter
+	private long version;
+
 	private Long lastUpdate = null;
 
 	@Inject
@@ -51,6 +64,39 @@ public class CurrentConfigurations
 	}
 
 
+	public void setPluginConfigs(List<PluginConfig> pluginConfigs)
+	{
+		Map<String, PluginConfig> configs = new HashMap<>();
+		for (PluginConfig config : pluginConfigs)
+		{
+			configs.put(config.getName(), config);
+		}
+
+		this.pluginConfigs = Collections.unmodifiableList(pluginConfigs);
+		this.configsByName = configs;
+		version++;
+	}
+
+	/**
+	 * Replaces the current config of a single plugin, e.g. when a custom setting was added to it.
+	 * @param config new current config of the plugin
+	 */
+	public void putConfig(PluginConfig config)
+	{
+		List<PluginConfig> configs = new ArrayList<>(pluginConfigs);
+		configs.replaceAll(c -> c.getName().equals(config.getName()) ? config : c);
+		setPluginConfigs(configs);
+	}
+
+	/**
+	 * @param pluginName name of the plugin
+	 * @return current config of the plugin or null if there is no such plugin
+	 */
+	public PluginConfig getConfig(String pluginName)
+	{
+		return configsByName.get(pluginName);
+	}
+
 	public Boolean update()
 	{
 		boolean updated = false;
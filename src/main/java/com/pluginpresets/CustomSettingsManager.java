@@ -25,61 +25,70 @@
 package com.pluginpresets;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 
 /**
- * Container storing all custom settings from all plugins across all presets
+ * Container storing all custom settings from all plugins across all presets.
+ * Settings are indexed by preset and by plugin config name, and presets are re-indexed only when their version changes.
  */
 @Singleton
 public class CustomSettingsManager
 {
-	private final List<CustomSetting> settings;
+	/**
+	 * Indexed presets, local and synced presets can have the same id.
+	 */
+	private final Map<PresetKey, IndexedPreset> presets;
+
+	/**
+	 * Custom settings by config name of the plugin config that contains them, then by customConfigName.key.
+	 * Many presets can contain the same custom setting.
+	 */
+	private final Map<String, Map<String, List<CustomSetting>>> settingsByConfig;
 
 	@Inject
 	public CustomSettingsManager()
 	{
-		this.settings = new ArrayList<>();
+		this.presets = new HashMap<>();
+		this.settingsByConfig = new HashMap<>();
 	}
 
 	/**
 	 * Finds custom settings for an individual plugin preset.
-	 * @param id the id of the preset to match against
+	 * @param preset the preset to match against
 	 * @return all matching custom settings
 	 */
-	public List<CustomSetting> getCustomSettingsFor(long id)
+	public List<CustomSetting> getCustomSettingsFor(PluginPreset preset)
 	{
-		ArrayList<CustomSetting> customSettingsList = new ArrayList<>();
-
-		settings.forEach(s ->
-		{
-			if (s.parentPreset.getId() == id)
-			{
-				customSettingsList.add(s);
-			}
-		});
-
-		return customSettingsList;
+		IndexedPreset indexed = presets.get(PresetKey.of(preset));
+		return indexed == null ? Collections.emptyList() : Collections.unmodifiableList(indexed.settings);
 	}
 
 	/**
 	 * Finds custom settings for all presets matching a plugin config name.
+	 * A custom setting that is in many presets is returned once.
 	 * @param configName the config name of the plugin
 	 * @return all matching custom settings
 	 */
 	public List<CustomSetting> getCustomConfigsFor(String configName)
 	{
-		ArrayList<CustomSetting> customSettingsList = new ArrayList<>();
-
-		settings.forEach(s ->
+		Map<String, List<CustomSetting>> configSettings = settingsByConfig.get(configName);
+		if (configSettings == null)
 		{
-			if (s.parentConfig.getConfigName().equals(configName))
-			{
-				customSettingsList.add(s);
-			}
-		});
+			return Collections.emptyList();
+		}
 
+		ArrayList<CustomSetting> customSettingsList = new ArrayList<>(configSettings.size());
+		configSettings.values().forEach(s -> customSettingsList.add(s.get(0)));
 		return customSettingsList;
 	}
 
@@ -89,17 +98,153 @@ public class CustomSettingsManager
 	 */
 	public void parseCustomSettings(List<PluginPreset> pluginPresets)
 	{
-		settings.clear();
+		presets.clear();
+		settingsByConfig.clear();
+		pluginPresets.forEach(this::addCustomSettings);
+	}
+
+	/**
+	 * Brings stored custom settings up to date with the presets, re-indexing only presets that were added,
+	 * replaced or changed since they were stored.
+	 * @param pluginPresets all the user's presets
+	 */
+	public void updateCustomSettings(List<PluginPreset> pluginPresets)
+	{
+		Set<PresetKey> keys = new HashSet<>();
+		for (PluginPreset preset : pluginPresets)
+		{
+			PresetKey key = PresetKey.of(preset);
+			keys.add(key);
+			IndexedPreset indexed = presets.get(key);
+			if (indexed == null || indexed.preset != preset || indexed.version != preset.getVersion())
+			{
+				addCustomSettings(preset);
+			}
+		}
+
+		for (PresetKey key : new ArrayList<>(presets.keySet()))
+		{
+			if (!keys.contains(key))
+			{
+				removeCustomSettings(key);
+			}
+		}
+	}
+
+	/**
+	 * Stores custom settings of a single preset, replacing previously stored settings of the preset.
+	 * @param preset the preset that was added
+	 */
+	public void addCustomSettings(PluginPreset preset)
+	{
+		PresetKey key = PresetKey.of(preset);
+		removeCustomSettings(key);
+
+		IndexedPreset indexed = new IndexedPreset(preset);
+		// Custom settings of presets whose configs are not loaded are kept with the preset, so they are not loaded here
+		preset.getCustomSettingConfigs().forEach(configuration ->
+			configuration.getSettings().forEach(setting ->
+			{
+				if (setting.getCustomConfigName() != null)
+				{
+					index(indexed, new CustomSetting(setting, configuration, preset));
+				}
+			}));
+		presets.put(key, indexed);
+	}
+
+	/**
+	 * Stores a custom setting that was added to a preset without indexing the rest of the preset.
+	 * @param preset        the preset the setting was added to
+	 * @param configuration the config that contains the setting
+	 * @param setting       the added custom setting
+	 */
+	public void addCustomSetting(PluginPreset preset, PluginConfig configuration, PluginSetting setting)
+	{
+		IndexedPreset indexed = presets.get(PresetKey.of(preset));
+		if (indexed == null)
+		{
+			addCustomSettings(preset);
+			return;
+		}
+
+		index(indexed, new CustomSetting(setting, configuration, preset));
+	}
+
+	private void index(IndexedPreset indexed, CustomSetting customSetting)
+	{
+		indexed.settings.add(customSetting);
+		settingsByConfig.computeIfAbsent(customSetting.getParentConfig().getConfigName(), c -> new LinkedHashMap<>())
+			.computeIfAbsent(customConfigKey(customSetting.getSetting()), k -> new ArrayList<>())
+			.add(customSetting);
+	}
+
+	/**
+	 * Removes stored custom settings of a single preset.
+	 * @param preset the preset that was removed
+	 */
+	public void removeCustomSettings(PluginPreset preset)
+	{
+		removeCustomSettings(PresetKey.of(preset));
+	}
+
+	private void removeCustomSettings(PresetKey presetKey)
+	{
+		IndexedPreset indexed = presets.remove(presetKey);
+		if (indexed == null)
+		{
+			return;
+		}
 
-		pluginPresets.forEach(preset ->
-			preset.getPluginConfigs().forEach(configuration ->
-				configuration.getSettings().forEach(setting ->
+		for (CustomSetting customSetting : indexed.settings)
+		{
+			String configName = customSetting.getParentConfig().getConfigName();
+			Map<String, List<CustomSetting>> configSettings = settingsByConfig.get(configName);
+			String key = customConfigKey(customSetting.getSetting());
+			List<CustomSetting> sameSettings = configSettings.get(key);
+			sameSettings.removeIf(s -> s == customSetting);
+			if (sameSettings.isEmpty())
+			{
+				configSettings.remove(key);
+				if (configSettings.isEmpty())
 				{
-					if (setting.getCustomConfigName() != null)
-					{
-						CustomSetting customSetting = new CustomSetting(setting, configuration, preset);
-						settings.add(customSetting);
-					}
-				})));
+					settingsByConfig.remove(configName);
+				}
+			}
+		}
+	}
+
+	private static String customConfigKey(PluginSetting setting)
+	{
+		return setting.getCustomConfigName() + "." + setting.getKey();
+	}
+
+	/**
+	 * Id and local flag of a preset.
+	 */
+	@Data
+	@AllArgsConstructor
+	private static class PresetKey
+	{
+		private final long id;
+		private final boolean local;
+
+		static PresetKey of(PluginPreset preset)
+		{
+			return new PresetKey(preset.getId(), Boolean.TRUE.equals(preset.getLocal()));
+		}
+	}
+
+	private static class IndexedPreset
+	{
+		private final PluginPreset preset;
+		private final long version;
+		private final List<CustomSetting> settings = new ArrayList<>();
+
+		private IndexedPreset(PluginPreset preset)
+		{
+			this.preset = preset;
+			this.version = preset.getVersion();
+		}
 	}
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Container for storing presets that are loaded when the client gets (un)focused
+ */
+@Singleton
+public class FocusManager
+{
+	private final List<PluginPreset> focusPresets;
+	private final List<PluginPreset> unfocusPresets;
+
+	@Inject
+	public FocusManager()
+	{
+		this.focusPresets = new ArrayList<>();
+		this.unfocusPresets = new ArrayList<>();
+	}
+
+	public void cacheFocusPresets(final List<PluginPreset> pluginPresets)
+	{
+		clearFocusPresets();
+		pluginPresets.forEach(preset -> {
+			final Boolean loadOnFocus = preset.getLoadOnFocus();
+			if (loadOnFocus != null)
+			{
+				(loadOnFocus ? focusPresets : unfocusPresets).add(preset);
+			}
+		});
+	}
+
+	/**
+	 * Returns presets that should be loaded for the given focus state.
+	 *
+	 * @param focused whether the client is focused
+	 */
+	public List<PluginPreset> getPresetsFor(final boolean focused)
+	{
+		return focused ? focusPresets : unfocusPresets;
+	}
+
+	public void clearFocusPresets()
+	{
+		focusPresets.clear();
+		unfocusPresets.clear();
+	}
+}
@@ -27,6 +27,7 @@ package com.pluginpresets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import lombok.Setter;
@@ -52,23 +53,41 @@ public class KeybindManager
 	public void cacheKeybinds(final List<PluginPreset> pluginPresets)
 	{
 		keybinds.clear();
-		pluginPresets.forEach(preset -> {
-			final Keybind keybind = preset.getKeybind();
-			if (keybind != null)
+		pluginPresets.forEach(this::addPreset);
+	}
+
+	public void addPreset(final PluginPreset preset)
+	{
+		final Keybind keybind = preset.getKeybind();
+		if (keybind != null)
+		{
+			// try to add to existing keybind list
+			if (keybinds.containsKey(keybind))
+			{
+				keybinds.get(keybind).add(preset);
+			}
+			else
+			{
+				final List<PluginPreset> list = new ArrayList<>();
+				list.add(preset);
+				keybinds.put(keybind, list);
+			}
+		}
+	}
+
+	public void removePreset(final PluginPreset preset)
+	{
+		final Keybind keybind = preset.getKeybind();
+		if (keybind != null && keybinds.containsKey(keybind))
+		{
+			final List<PluginPreset> list = keybinds.get(keybind);
+			// Local and synced presets can have the same id
+			list.removeIf(p -> p.getId() == preset.getId() && Objects.equals(p.getLocal(), preset.getLocal()));
+			if (list.isEmpty())
 			{
-				// try to add to existing keybind list
-				if (keybinds.containsKey(keybind))
-				{
-					keybinds.get(keybind).add(preset);
-				}
-				else
-				{
-					final List<PluginPreset> list = new ArrayList<>();
-					list.add(preset);
-					keybinds.put(keybind, list);
-				}
+				keybinds.remove(keybind);
 			}
-		});
+		}
 	}
 
 	public PluginPreset getPresetFor(final Keybind keybind)
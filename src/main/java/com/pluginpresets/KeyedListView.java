@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Read only list view of the values of an insertion ordered map, so that presets can be accessed by key while
+ * serializing and displaying them as lists.
+ * Getting a value by index walks the map, so iterate the view instead of indexing it in a loop.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+class KeyedListView<K, V> extends AbstractList<V>
+{
+	private final Map<K, V> map;
+
+	KeyedListView(Map<K, V> map)
+	{
+		this.map = map;
+	}
+
+	@Override
+	public V get(int index)
+	{
+		if (index < 0 || index >= map.size())
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + map.size());
+		}
+
+		Iterator<V> iterator = map.values().iterator();
+		for (int i = 0; i < index; i++)
+		{
+			iterator.next();
+		}
+		return iterator.next();
+	}
+
+	@Override
+	public int size()
+	{
+		return map.size();
+	}
+
+	@Override
+	public Iterator<V> iterator()
+	{
+		return Collections.unmodifiableCollection(map.values()).iterator();
+	}
+}
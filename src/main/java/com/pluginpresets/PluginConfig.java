@@ -24,10 +24,15 @@
  */
 package com.pluginpresets;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import java.util.Map;
+import java.util.function.Predicate;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
  * The config for an individual plugin within a preset. Contains various PluginSettings.
@@ -37,15 +42,113 @@ import lombok.Data;
  * @param enabled    Configuration sidepanel switch value on/off
  * @param settings   List of saved plugins settings.
  *                   Some plugins don't have any configurable settings e.g. Ammo Plugin, in those cases this will be an empty array.
+ * <p>
+ * Configs are shared by many presets and current configurations, so they can not be changed.
+ * The with methods return a changed copy, which is then put to the preset.
  */
-@Data
-@AllArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
 public class PluginConfig
 {
-	private String name;
-	private String configName;
-	private Boolean enabled;
-	private List<PluginSetting> settings;
+	private final String name;
+	private final String configName;
+	private final Boolean enabled;
+
+	/**
+	 * Settings by their key, in the order they were added.
+	 */
+	private final Map<String, PluginSetting> settings;
+
+	/**
+	 * Made when first needed, configs do not change.
+	 */
+	@Getter(AccessLevel.NONE)
+	@ToString.Exclude
+	private transient PresetSummary.ConfigSummary summary;
+
+	public PluginConfig(String name, String configName, Boolean enabled, List<PluginSetting> settings)
+	{
+		this(name, configName, enabled, toMap(settings));
+	}
+
+	/**
+	 * @param settings settings by their key, the map is not copied
+	 */
+	PluginConfig(String name, String configName, Boolean enabled, Map<String, PluginSetting> settings)
+	{
+		this.name = name;
+		this.configName = configName;
+		this.enabled = enabled;
+		this.settings = settings;
+	}
+
+	private static Map<String, PluginSetting> toMap(List<PluginSetting> settings)
+	{
+		if (settings == null)
+		{
+			return null;
+		}
+
+		Map<String, PluginSetting> map = new LinkedHashMap<>();
+		for (PluginSetting setting : settings)
+		{
+			map.put(setting.getKey(), setting);
+		}
+		return map;
+	}
+
+	/**
+	 * @return settings as a read only list backed by this config
+	 */
+	public List<PluginSetting> getSettings()
+	{
+		return settings == null ? null : new KeyedListView<>(settings);
+	}
+
+	/**
+	 * @return a copy of this config with the setting added, replacing a setting with the same key
+	 */
+	public PluginConfig withSetting(PluginSetting setting)
+	{
+		Map<String, PluginSetting> changed = settings == null ? new LinkedHashMap<>() : new LinkedHashMap<>(settings);
+		changed.put(setting.getKey(), setting);
+		return new PluginConfig(name, configName, enabled, changed);
+	}
+
+	/**
+	 * @return a copy of this config without the setting with the given key
+	 */
+	public PluginConfig withoutSetting(String key)
+	{
+		Map<String, PluginSetting> changed = settings == null ? null : new LinkedHashMap<>(settings);
+		if (changed != null)
+		{
+			changed.remove(key);
+		}
+		return new PluginConfig(name, configName, enabled, changed);
+	}
+
+	/**
+	 * @return a copy of this config with only the settings accepted by the filter
+	 */
+	public PluginConfig withSettingsMatching(Predicate<PluginSetting> filter)
+	{
+		Map<String, PluginSetting> changed = settings == null ? null : new LinkedHashMap<>(settings);
+		if (changed != null)
+		{
+			changed.values().removeIf(filter.negate());
+		}
+		return new PluginConfig(name, configName, enabled, changed);
+	}
+
+	/**
+	 * @return a copy of this config with the given on/off status, null to leave the status out of the config
+	 */
+	public PluginConfig withEnabled(Boolean enabled)
+	{
+		return new PluginConfig(name, configName, enabled, settings == null ? null : new LinkedHashMap<>(settings));
+	}
 
 	public Boolean match(PluginConfig presetConfig)
 	{
@@ -60,15 +163,11 @@ public class PluginConfig
 			return false;
 		}
 
-		List<PluginSetting> currentSettings = settings;
 		// Compare plugin settings from preset to current config settings
 		for (PluginSetting presetConfigSetting : presetConfig.getSettings())
 		{
 			// Get current config setting for compared preset setting
-			PluginSetting currentConfigSetting = currentSettings.stream()
-				.filter(c ->c.getKey().equals(presetConfigSetting.getKey()))
-				.findFirst()
-				.orElse(null);
+			PluginSetting currentConfigSetting = getSetting(presetConfigSetting.getKey());
 
 			if (currentConfigSetting != null &&
 				presetConfigSetting.getValue() != null &&
@@ -82,29 +181,39 @@ public class PluginConfig
 
 	public PluginSetting getSetting(PluginSetting searchedSetting)
 	{
-		PluginSetting presetSetting = null;
-		if (settings != null)
-		{
-			for (PluginSetting setting : settings)
-			{
-				if (setting.getKey().equals(searchedSetting.getKey()))
-				{
-					presetSetting = setting;
-					break;
-				}
-			}
-		}
-		return presetSetting;
+		return getSetting(searchedSetting.getKey());
+	}
+
+	public PluginSetting getSetting(String key)
+	{
+		return settings != null ? settings.get(key) : null;
+	}
+
+	public boolean hasSetting(String key)
+	{
+		return settings != null && settings.containsKey(key);
 	}
 
 	public List<String> getSettingKeys()
 	{
-		return settings.stream().map(PluginSetting::getKey).collect(Collectors.toList());
+		return new ArrayList<>(settings.keySet());
+	}
+
+	/**
+	 * @return on/off status and settings hash of this config, used to match presets whose configs are not loaded
+	 */
+	PresetSummary.ConfigSummary getSummary()
+	{
+		if (summary == null)
+		{
+			summary = PresetSummary.ConfigSummary.of(this);
+		}
+		return summary;
 	}
 
 	public boolean containsCustomSettings()
 	{
-		for (PluginSetting s : settings)
+		for (PluginSetting s : settings.values())
 		{
 			if (s.getCustomConfigName() != null)
 			{
@@ -26,7 +26,14 @@ package com.pluginpresets;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import net.runelite.client.config.Keybind;
@@ -40,42 +47,84 @@ import net.runelite.client.config.Keybind;
  * @param local         Used to identify whether the preset is stored in /presets or settings.properties
  * @param loadOnFocus   Used to enable the preset when client is (un)focused (Optional)
  * @param pluginConfigs List of saved plugin configurations.
+ * <p>
+ * Plugin configs may be shared by many presets and current configurations, so they are not changed in place.
+ * A change puts a changed copy of the config to the preset, which increments the preset's version.
+ * Other fields are set by storage and loading code in this package, the ui changes them through the plugin.
  */
 public class PluginPreset
 {
 	@Getter
-	@Setter
 	private long id;
 
 	@Getter
-	@Setter
 	private String name;
 
 	@Getter
-	@Setter
 	private Keybind keybind;
 
 	@Getter
-	@Setter
 	private Boolean local;
 
 	/**
 	 * True when loaded on focus and false when loaded on unfocus.
 	 */
 	@Getter
-	@Setter
 	private Boolean loadOnFocus;
 
 	/**
 	 * Preset gets auto updated automatically on load if true
 	 */
 	@Getter
-	@Setter
 	private Boolean autoUpdated;
 
+	/**
+	 * Plugin configs by plugin name, in the order they were added.
+	 */
+	private Map<String, PluginConfig> pluginConfigs;
+
+	/**
+	 * Loads pluginConfigs of a preset that was loaded from storage without them, returns null if they could not be loaded.
+	 */
+	@Setter(AccessLevel.PACKAGE)
+	private transient Function<PluginPreset, List<PluginConfig>> bodyLoader;
+
+	/**
+	 * Set when pluginConfigs could not be loaded from storage, so that loading is not tried again on every access.
+	 */
+	@Getter
+	private transient boolean bodyUnavailable;
+
+	/**
+	 * Used instead of pluginConfigs while they are not loaded, read with the header when stored with the preset
+	 * and made when pluginConfigs are unloaded.
+	 */
+	@Getter(AccessLevel.PACKAGE)
+	@Setter(AccessLevel.PACKAGE)
+	private transient PresetSummary summary;
+
+	/**
+	 * Used by storage to unload pluginConfigs of presets that have not been used recently.
+	 */
+	@Getter
+	private transient long lastUsed;
+
+	private static long useCounter;
+
+	/**
+	 * Incremented on every change to the preset, e.g. to know whether a cached result is still valid.
+	 */
 	@Getter
-	@Setter
-	private List<PluginConfig> pluginConfigs;
+	private transient long version;
+
+	/**
+	 * Names of the plugins whose configs have changed since clearChangedConfigs.
+	 */
+	private final transient Set<String> changedConfigs = new HashSet<>();
+
+	private transient long matchedVersion = -1;
+	private transient long matchedConfigurationsVersion = -1;
+	private transient boolean matched;
 
 	public PluginPreset(String name)
 	{
@@ -85,41 +134,267 @@ public class PluginPreset
 		this.local = true;
 		this.loadOnFocus = null;
 		this.autoUpdated = null;
-		this.pluginConfigs = new ArrayList<>();
+		this.pluginConfigs = new LinkedHashMap<>();
 	}
 
-	public Boolean match(PluginPreset preset)
+	/**
+	 * @return plugin configs as a read only list backed by this preset, use putConfig and removeConfig to change them
+	 */
+	public List<PluginConfig> getPluginConfigs()
+	{
+		Map<String, PluginConfig> configs = getConfigMap();
+		return configs == null ? null : new KeyedListView<>(configs);
+	}
+
+	void setPluginConfigs(List<PluginConfig> pluginConfigs)
+	{
+		if (this.pluginConfigs != null)
+		{
+			changedConfigs.addAll(this.pluginConfigs.keySet());
+		}
+		this.pluginConfigs = toMap(pluginConfigs);
+		if (this.pluginConfigs != null)
+		{
+			changedConfigs.addAll(this.pluginConfigs.keySet());
+		}
+		version++;
+	}
+
+	private static Map<String, PluginConfig> toMap(List<PluginConfig> pluginConfigs)
+	{
+		if (pluginConfigs == null)
+		{
+			return null;
+		}
+
+		Map<String, PluginConfig> configs = new LinkedHashMap<>();
+		for (PluginConfig config : pluginConfigs)
+		{
+			configs.put(config.getName(), config);
+		}
+		return configs;
+	}
+
+	private Map<String, PluginConfig> getConfigMap()
 	{
-		for (PluginConfig presetConfig : pluginConfigs)
+		if (bodyLoader != null)
 		{
-			for (PluginConfig comparedConfig : preset.getPluginConfigs())
+			lastUsed = ++useCounter;
+			if (pluginConfigs == null && !bodyUnavailable)
 			{
-				if (comparedConfig.getName().equals(presetConfig.getName()))
+				// Loading the configs from storage does not change the preset
+				pluginConfigs = toMap(bodyLoader.apply(this));
+				bodyUnavailable = pluginConfigs == null;
+				if (!bodyUnavailable)
 				{
-					if (!presetConfig.match(comparedConfig))
-					{
-						return false;
-					}
+					// The summary is made again from the configs when they are unloaded
+					summary = null;
 				}
 			}
 		}
+		// An unavailable body reads as empty but is never installed, so it can not be saved over the stored one
+		return bodyUnavailable ? Collections.emptyMap() : pluginConfigs;
+	}
+
+	private Map<String, PluginConfig> getConfigMapToChange()
+	{
+		Map<String, PluginConfig> configs = getConfigMap();
+		if (bodyUnavailable)
+		{
+			throw new IllegalStateException("Plugin configurations of preset " + name + " could not be loaded");
+		}
+		return configs;
+	}
+
+	/**
+	 * @param pluginName name of the plugin
+	 * @return this preset's config for the plugin or null if the preset has none
+	 */
+	public PluginConfig getConfig(String pluginName)
+	{
+		return getConfigMap().get(pluginName);
+	}
+
+	/**
+	 * Adds the config, replacing a config of the same plugin.
+	 * The config must not be changed after this, put a changed copy instead.
+	 */
+	public void putConfig(PluginConfig config)
+	{
+		if (getConfigMapToChange().put(config.getName(), config) != config)
+		{
+			configChanged(config.getName());
+		}
+	}
+
+	/**
+	 * @return the removed config or null if the preset had no config for the plugin
+	 */
+	public PluginConfig removeConfig(String pluginName)
+	{
+		PluginConfig removed = getConfigMapToChange().remove(pluginName);
+		if (removed != null)
+		{
+			configChanged(pluginName);
+		}
+		return removed;
+	}
+
+	private void configChanged(String pluginName)
+	{
+		changedConfigs.add(pluginName);
+		version++;
+	}
+
+	/**
+	 * @return names of the plugins whose configs were put or removed since the last clearChangedConfigs
+	 */
+	public Set<String> getChangedConfigs()
+	{
+		return Collections.unmodifiableSet(changedConfigs);
+	}
+
+	public void clearChangedConfigs()
+	{
+		changedConfigs.clear();
+	}
+
+	void setId(long id)
+	{
+		this.id = id;
+		version++;
+	}
+
+	void setName(String name)
+	{
+		this.name = name;
+		version++;
+	}
+
+	void setKeybind(Keybind keybind)
+	{
+		this.keybind = keybind;
+		version++;
+	}
+
+	void setLocal(Boolean local)
+	{
+		this.local = local;
+		version++;
+	}
+
+	void setLoadOnFocus(Boolean loadOnFocus)
+	{
+		this.loadOnFocus = loadOnFocus;
+		version++;
+	}
+
+	void setAutoUpdated(Boolean autoUpdated)
+	{
+		this.autoUpdated = autoUpdated;
+		version++;
+	}
+
+	/**
+	 * @return true if pluginConfigs are in memory or can be loaded from storage
+	 */
+	public boolean hasPluginConfigs()
+	{
+		return pluginConfigs != null || bodyLoader != null;
+	}
+
+	/**
+	 * Drops pluginConfigs from memory, they are loaded again from storage when needed.
+	 * A summary of them is kept, see PresetSummary.
+	 */
+	public void unloadBody()
+	{
+		if (bodyLoader != null)
+		{
+			if (pluginConfigs != null)
+			{
+				summary = PresetSummary.of(pluginConfigs.values());
+			}
+			pluginConfigs = null;
+			bodyUnavailable = false;
+		}
+	}
+
+	/**
+	 * @return summary to use instead of pluginConfigs, or null if pluginConfigs are loaded or have to be loaded
+	 */
+	private PresetSummary getUnloadedSummary()
+	{
+		return pluginConfigs == null && bodyLoader != null && !bodyUnavailable ? summary : null;
+	}
+
+	/**
+	 * Does not load pluginConfigs that are not loaded.
+	 *
+	 * @return plugin configs that contain custom settings, possibly with other settings too
+	 */
+	public List<PluginConfig> getCustomSettingConfigs()
+	{
+		PresetSummary unloaded = getUnloadedSummary();
+		if (unloaded != null)
+		{
+			return unloaded.getCustomSettingConfigs();
+		}
+
+		List<PluginConfig> configs = new ArrayList<>();
+		for (PluginConfig config : getConfigMap().values())
+		{
+			if (config.containsCustomSettings())
+			{
+				configs.add(config);
+			}
+		}
+		return configs;
+	}
+
+	public Boolean match(PluginPreset preset)
+	{
+		for (PluginConfig presetConfig : getConfigMap().values())
+		{
+			PluginConfig comparedConfig = preset.getConfig(presetConfig.getName());
+			if (comparedConfig != null && !presetConfig.match(comparedConfig))
+			{
+				return false;
+			}
+		}
 		return true;
 	}
 
+	/**
+	 * Result is cached until either the preset or current configurations change.
+	 * Does not load pluginConfigs that are not loaded unless a config can not be matched by its summary.
+	 */
 	public Boolean match(CurrentConfigurations currentConfigurations)
 	{
-		for (PluginConfig presetConfig : pluginConfigs)
+		if (matchedVersion != version || matchedConfigurationsVersion != currentConfigurations.getVersion())
+		{
+			matched = matchConfigurations(currentConfigurations);
+			matchedVersion = version;
+			matchedConfigurationsVersion = currentConfigurations.getVersion();
+		}
+		return matched;
+	}
+
+	private boolean matchConfigurations(CurrentConfigurations currentConfigurations)
+	{
+		PresetSummary unloaded = getUnloadedSummary();
+		if (unloaded != null)
 		{
-			PluginConfig currentConfig = null;
-			for (PluginConfig config : currentConfigurations.getPluginConfigs())
+			Boolean summaryMatch = unloaded.match(currentConfigurations);
+			if (summaryMatch != null)
 			{
-				if (config.getName().equals(presetConfig.getName()))
-				{
-					currentConfig = config;
-					break;
-				}
+				return summaryMatch;
 			}
+		}
 
+		for (PluginConfig presetConfig : getConfigMap().values())
+		{
+			PluginConfig currentConfig = currentConfigurations.getConfig(presetConfig.getName());
 			if (currentConfig == null)
 			{
 				continue;
@@ -130,15 +405,11 @@ public class PluginPreset
 				return false;
 			}
 
-			List<PluginSetting> currentSettings = currentConfig.getSettings();
 			// Compare plugin settings from preset to current config settings
 			for (PluginSetting presetConfigSetting : presetConfig.getSettings())
 			{
 				// Get current config setting for compared preset setting
-				PluginSetting currentConfigSetting = currentSettings.stream()
-					.filter(c -> c.getKey().equals(presetConfigSetting.getKey()))
-					.findFirst()
-					.orElse(null);
+				PluginSetting currentConfigSetting = currentConfig.getSetting(presetConfigSetting.getKey());
 
 				if (currentConfigSetting != null &&
 					presetConfigSetting.getValue() != null &&
@@ -153,26 +424,24 @@ public class PluginPreset
 
 	public PluginConfig getConfig(final PluginConfig searchedConfig)
 	{
-		PluginConfig presetConfig = null;
-		for (PluginConfig config : pluginConfigs)
-		{
-			if (config.getName().equals(searchedConfig.getName()))
-			{
-				presetConfig = config;
-				break;
-			}
-		}
-		return presetConfig;
+		return getConfig(searchedConfig.getName());
 	}
 
 	public boolean isEmpty()
 	{
-		return pluginConfigs.isEmpty();
+		PresetSummary unloaded = getUnloadedSummary();
+		return unloaded != null ? unloaded.isEmpty() : getConfigMap().isEmpty();
 	}
 
 	public boolean canBeDisabled()
 	{
-		for (PluginConfig presetConfig : pluginConfigs)
+		PresetSummary unloaded = getUnloadedSummary();
+		if (unloaded != null)
+		{
+			return unloaded.canBeDisabled();
+		}
+
+		for (PluginConfig presetConfig : getConfigMap().values())
 		{
 			if (presetConfig.getEnabled() != null && presetConfig.getEnabled())
 			{
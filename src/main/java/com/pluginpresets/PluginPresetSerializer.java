@@ -0,0 +1,666 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.runelite.client.config.Keybind;
+
+/**
+ * Serializes presets to and from json with streaming type adapters instead of reflection.
+ * Null fields and the local status of a preset are not written, local is only read from older preset data.
+ * Repeated strings such as setting keys are interned.
+ */
+@Singleton
+public class PluginPresetSerializer
+{
+	static final Type PRESET_LIST_TYPE = new TypeToken<List<PluginPreset>>()
+	{
+	}.getType();
+
+	/**
+	 * Interned keys and names. They come from the settings of installed plugins, so there is a bounded
+	 * amount of them and they are kept for the lifetime of the client.
+	 */
+	private static final Map<String, String> STRINGS = new ConcurrentHashMap<>();
+
+	private final Gson gson;
+
+	@Inject
+	public PluginPresetSerializer(Gson gson)
+	{
+		this.gson = gson.newBuilder()
+			.registerTypeAdapter(PluginPreset.class, new PluginPresetAdapter())
+			.registerTypeAdapter(PluginConfig.class, new PluginConfigAdapter())
+			.registerTypeAdapter(PluginSetting.class, new PluginSettingAdapter())
+			.registerTypeAdapter(Keybind.class, new KeybindAdapter())
+			.create();
+	}
+
+	public String toJson(PluginPreset preset)
+	{
+		return gson.toJson(preset, PluginPreset.class);
+	}
+
+	public void toJson(PluginPreset preset, Writer writer)
+	{
+		gson.toJson(preset, PluginPreset.class, writer);
+	}
+
+	/**
+	 * Writes preset with a summary of its configs, so that headerFromJson does not have to parse the configs.
+	 * Used for presets written to storage, the summary is ignored by fromJson.
+	 */
+	public String toJsonWithSummary(PluginPreset preset)
+	{
+		final StringWriter writer = new StringWriter();
+		try (JsonWriter out = gson.newJsonWriter(writer))
+		{
+			new PluginPresetAdapter(null, true).write(out, preset);
+		}
+		catch (IOException e)
+		{
+			throw new JsonIOException(e);
+		}
+		return writer.toString();
+	}
+
+	public PluginPreset fromJson(String json)
+	{
+		try
+		{
+			return gson.fromJson(json, PluginPreset.class);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	public PluginPreset fromJson(Reader reader)
+	{
+		try
+		{
+			return gson.fromJson(reader, PluginPreset.class);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	/**
+	 * Reads preset without its pluginConfigs, which are skipped and loaded later with the given loader when needed.
+	 * The preset gets the summary of the configs that was written with it, if any.
+	 */
+	public PluginPreset headerFromJson(Reader reader, Function<PluginPreset, List<PluginConfig>> bodyLoader)
+	{
+		try (JsonReader in = new JsonReader(reader))
+		{
+			return new PluginPresetAdapter(bodyLoader, false).read(in);
+		}
+		catch (IOException | IllegalStateException | NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	void write(JsonWriter out, PluginPreset preset) throws IOException
+	{
+		gson.getAdapter(PluginPreset.class).write(out, preset);
+	}
+
+	PluginPreset read(JsonReader in) throws IOException
+	{
+		return gson.getAdapter(PluginPreset.class).read(in);
+	}
+
+	static void writeSummary(JsonWriter out, PresetSummary summary) throws IOException
+	{
+		final PluginConfigAdapter configAdapter = new PluginConfigAdapter();
+		out.beginObject();
+		out.name("configs").beginArray();
+		for (Map.Entry<String, PresetSummary.ConfigSummary> entry : summary.getConfigs().entrySet())
+		{
+			out.beginObject();
+			out.name("name").value(entry.getKey());
+			writeIfNotNull(out, "enabled", entry.getValue().getEnabled());
+			out.name("keys").value(entry.getValue().getKeysHash());
+			out.name("values").value(entry.getValue().getValuesHash());
+			out.endObject();
+		}
+		out.endArray();
+		out.name("customSettingConfigs").beginArray();
+		for (PluginConfig config : summary.getCustomSettingConfigs())
+		{
+			configAdapter.write(out, config);
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	static PresetSummary readSummary(JsonReader in) throws IOException
+	{
+		final PluginConfigAdapter configAdapter = new PluginConfigAdapter();
+		final Map<String, PresetSummary.ConfigSummary> configs = new LinkedHashMap<>();
+		final List<PluginConfig> customSettingConfigs = new ArrayList<>();
+		in.beginObject();
+		while (in.hasNext())
+		{
+			switch (in.nextName())
+			{
+				case "configs":
+					in.beginArray();
+					while (in.hasNext())
+					{
+						String name = null;
+						Boolean enabled = null;
+						long keysHash = 0;
+						long valuesHash = 0;
+						in.beginObject();
+						while (in.hasNext())
+						{
+							switch (in.nextName())
+							{
+								case "name":
+									name = nextInternedString(in);
+									break;
+								case "enabled":
+									enabled = nextBoolean(in);
+									break;
+								case "keys":
+									keysHash = in.nextLong();
+									break;
+								case "values":
+									valuesHash = in.nextLong();
+									break;
+								default:
+									in.skipValue();
+							}
+						}
+						in.endObject();
+						configs.put(name, new PresetSummary.ConfigSummary(enabled, keysHash, valuesHash));
+					}
+					in.endArray();
+					break;
+				case "customSettingConfigs":
+					in.beginArray();
+					while (in.hasNext())
+					{
+						final PluginConfig config = configAdapter.read(in);
+						if (config != null)
+						{
+							customSettingConfigs.add(config);
+						}
+					}
+					in.endArray();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return new PresetSummary(configs, customSettingConfigs);
+	}
+
+	public List<PluginPreset> listFromJson(String json)
+	{
+		try
+		{
+			return gson.fromJson(json, PRESET_LIST_TYPE);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	private static String nextString(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	private static String nextInternedString(JsonReader in) throws IOException
+	{
+		final String string = nextString(in);
+		if (string == null)
+		{
+			return null;
+		}
+		final String interned = STRINGS.get(string);
+		if (interned != null)
+		{
+			return interned;
+		}
+		final String previous = STRINGS.putIfAbsent(string, string);
+		return previous == null ? string : previous;
+	}
+
+	private static Boolean nextBoolean(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		return in.nextBoolean();
+	}
+
+	private static void writeIfNotNull(JsonWriter out, String name, String value) throws IOException
+	{
+		if (value != null)
+		{
+			out.name(name).value(value);
+		}
+	}
+
+	private static void writeIfNotNull(JsonWriter out, String name, Boolean value) throws IOException
+	{
+		if (value != null)
+		{
+			out.name(name).value(value);
+		}
+	}
+
+	private static class PluginPresetAdapter extends TypeAdapter<PluginPreset>
+	{
+		private final PluginConfigAdapter configAdapter = new PluginConfigAdapter();
+		private final KeybindAdapter keybindAdapter = new KeybindAdapter();
+		/**
+		 * When set, pluginConfigs are skipped and left for the loader.
+		 */
+		private final Function<PluginPreset, List<PluginConfig>> bodyLoader;
+		/**
+		 * When set, a summary of pluginConfigs is written before them.
+		 */
+		private final boolean writeSummary;
+
+		PluginPresetAdapter()
+		{
+			this(null, false);
+		}
+
+		PluginPresetAdapter(Function<PluginPreset, List<PluginConfig>> bodyLoader, boolean writeSummary)
+		{
+			this.bodyLoader = bodyLoader;
+			this.writeSummary = writeSummary;
+		}
+
+		@Override
+		public void write(JsonWriter out, PluginPreset preset) throws IOException
+		{
+			if (preset == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("id").value(preset.getId());
+			writeIfNotNull(out, "name", preset.getName());
+			if (preset.getKeybind() != null)
+			{
+				out.name("keybind");
+				keybindAdapter.write(out, preset.getKeybind());
+			}
+			writeIfNotNull(out, "loadOnFocus", preset.getLoadOnFocus());
+			writeIfNotNull(out, "autoUpdated", preset.getAutoUpdated());
+			if (writeSummary && preset.getPluginConfigs() != null)
+			{
+				out.name("summary");
+				writeSummary(out, PresetSummary.of(preset.getPluginConfigs()));
+			}
+			if (preset.getPluginConfigs() != null)
+			{
+				out.name("pluginConfigs").beginArray();
+				for (PluginConfig config : preset.getPluginConfigs())
+				{
+					configAdapter.write(out, config);
+				}
+				out.endArray();
+			}
+			out.endObject();
+		}
+
+		@Override
+		public PluginPreset read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			final PluginPreset preset = new PluginPreset(null);
+			preset.setId(0);
+			preset.setLocal(null);
+			preset.setPluginConfigs(null);
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "id":
+						preset.setId(in.nextLong());
+						break;
+					case "name":
+						preset.setName(nextString(in));
+						break;
+					case "keybind":
+						preset.setKeybind(keybindAdapter.read(in));
+						break;
+					case "local":
+						preset.setLocal(nextBoolean(in));
+						break;
+					case "loadOnFocus":
+						preset.setLoadOnFocus(nextBoolean(in));
+						break;
+					case "autoUpdated":
+						preset.setAutoUpdated(nextBoolean(in));
+						break;
+					case "summary":
+						if (bodyLoader != null && in.peek() != JsonToken.NULL)
+						{
+							preset.setSummary(readSummary(in));
+						}
+						else
+						{
+							in.skipValue();
+						}
+						break;
+					case "pluginConfigs":
+						if (bodyLoader != null && in.peek() != JsonToken.NULL)
+						{
+							in.skipValue();
+							preset.setBodyLoader(bodyLoader);
+						}
+						else
+						{
+							preset.setPluginConfigs(readConfigs(in));
+						}
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+			return preset;
+		}
+
+		private List<PluginConfig> readConfigs(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			final List<PluginConfig> configs = new ArrayList<>();
+			in.beginArray();
+			while (in.hasNext())
+			{
+				final PluginConfig config = configAdapter.read(in);
+				if (config != null)
+				{
+					configs.add(config);
+				}
+			}
+			in.endArray();
+			return configs;
+		}
+	}
+
+	private static class PluginConfigAdapter extends TypeAdapter<PluginConfig>
+	{
+		private final PluginSettingAdapter settingAdapter = new PluginSettingAdapter();
+
+		@Override
+		public void write(JsonWriter out, PluginConfig config) throws IOException
+		{
+			if (config == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			writeIfNotNull(out, "name", config.getName());
+			writeIfNotNull(out, "configName", config.getConfigName());
+			writeIfNotNull(out, "enabled", config.getEnabled());
+			if (config.getSettings() != null)
+			{
+				out.name("settings").beginArray();
+				for (PluginSetting setting : config.getSettings())
+				{
+					settingAdapter.write(out, setting);
+				}
+				out.endArray();
+			}
+			out.endObject();
+		}
+
+		@Override
+		public PluginConfig read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			String name = null;
+			String configName = null;
+			Boolean enabled = null;
+			Map<String, PluginSetting> settings = null;
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "name":
+						name = nextInternedString(in);
+						break;
+					case "configName":
+						configName = nextInternedString(in);
+						break;
+					case "enabled":
+						enabled = nextBoolean(in);
+						break;
+					case "settings":
+						settings = readSettings(in);
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+			return new PluginConfig(name, configName, enabled, settings);
+		}
+
+		/**
+		 * Reads settings straight into the map that backs the config.
+		 */
+		private Map<String, PluginSetting> readSettings(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			final Map<String, PluginSetting> settings = new LinkedHashMap<>();
+			in.beginArray();
+			while (in.hasNext())
+			{
+				final PluginSetting setting = settingAdapter.read(in);
+				if (setting != null)
+				{
+					settings.put(setting.getKey(), setting);
+				}
+			}
+			in.endArray();
+			return settings;
+		}
+	}
+
+	private static class PluginSettingAdapter extends TypeAdapter<PluginSetting>
+	{
+		@Override
+		public void write(JsonWriter out, PluginSetting setting) throws IOException
+		{
+			if (setting == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			writeIfNotNull(out, "name", setting.getName());
+			writeIfNotNull(out, "key", setting.getKey());
+			writeIfNotNull(out, "value", setting.getValue());
+			writeIfNotNull(out, "customConfigName", setting.getCustomConfigName());
+			writeIfNotNull(out, "configName", setting.getConfigName());
+			out.endObject();
+		}
+
+		@Override
+		public PluginSetting read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			String name = null;
+			String key = null;
+			String value = null;
+			String customConfigName = null;
+			String configName = null;
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "name":
+						name = nextInternedString(in);
+						break;
+					case "key":
+						key = nextInternedString(in);
+						break;
+					case "value":
+						value = nextString(in);
+						break;
+					case "customConfigName":
+						customConfigName = nextInternedString(in);
+						break;
+					case "configName":
+						configName = nextInternedString(in);
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+			return new PluginSetting(name, key, value, customConfigName, configName);
+		}
+	}
+
+	private static class KeybindAdapter extends TypeAdapter<Keybind>
+	{
+		@Override
+		public void write(JsonWriter out, Keybind keybind) throws IOException
+		{
+			if (keybind == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("keyCode").value(keybind.getKeyCode());
+			out.name("modifiers").value(keybind.getModifiers());
+			out.endObject();
+		}
+
+		@Override
+		public Keybind read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			int keyCode = 0;
+			int modifiers = 0;
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "keyCode":
+						keyCode = in.nextInt();
+						break;
+					case "modifiers":
+						modifiers = in.nextInt();
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+			return new Keybind(keyCode, modifiers);
+		}
+	}
+}
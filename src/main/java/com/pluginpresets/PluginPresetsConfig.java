@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import net.runelite.client.config.Config;
+import net.runelite.client.config.ConfigGroup;
+import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
+
+@ConfigGroup(PluginPresetsConfig.GROUP)
+public interface PluginPresetsConfig extends Config
+{
+	String GROUP = "pluginpresets";
+
+	@ConfigItem(
+		keyName = "focusSettleDelay",
+		name = "Focus settle delay",
+		description = "How long the client focus has to stay unchanged before focus presets are loaded.<br>" +
+			"Prevents tooltips and dialogs that briefly steal focus from loading presets.",
+		position = 0
+	)
+	@Units(Units.MILLISECONDS)
+	@Range(max = 2000)
+	default int focusSettleDelay()
+	{
+		return 100;
+	}
+
+	@ConfigItem(
+		keyName = "compressPresetFiles",
+		name = "Compress preset files",
+		description = "Store presets in the preset folder as gzip compressed json.<br>" +
+			"Both plain and compressed preset files are always loaded. Copying presets to clipboard still uses plain json.",
+		position = 1
+	)
+	default boolean compressPresetFiles()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "presetStorage",
+		name = "Preset storage",
+		description = "How local presets are stored in the preset folder.<br>" +
+			"A single file saves and loads faster with very large preset libraries. Presets are moved over when this is changed.",
+		position = 2
+	)
+	default PresetStorage presetStorage()
+	{
+		return PresetStorage.PRESET_FILES;
+	}
+
+	@ConfigItem(
+		keyName = "loadedPresetLimit",
+		name = "Loaded preset limit",
+		description = "How many local presets keep their plugin settings in memory.<br>" +
+			"Settings of other local presets are read from the preset folder when needed.",
+		position = 3
+	)
+	@Range(min = 10, max = 10000)
+	default int loadedPresetLimit()
+	{
+		return 500;
+	}
+
+	@ConfigItem(
+		keyName = "folderSettleDelay",
+		name = "Folder settle delay",
+		description = "How long the preset folder has to stay unchanged before changes made outside this client are loaded.<br>" +
+			"Many changes in a row, e.g. from a sync tool, are then loaded at once.",
+		position = 4
+	)
+	@Units(Units.MILLISECONDS)
+	@Range(max = 5000)
+	default int folderSettleDelay()
+	{
+		return 250;
+	}
+
+	enum PresetStorage
+	{
+		PRESET_FILES("File per preset"),
+		SINGLE_FILE("Single file");
+
+		private final String name;
+
+		PresetStorage(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+}
@@ -97,27 +97,15 @@ public class PluginPresetsCurrentConfigManager
 					});
 				}
 
-				List<CustomSetting> configsCustomSettings = customSettingsManager.getCustomConfigsFor(configName);
-				if (!configsCustomSettings.isEmpty())
+				// Custom settings are unique by config.key, even if many presets have them
+				customSettingsManager.getCustomConfigsFor(configName).forEach(customSetting ->
 				{
-					// Don't add duplicate custom settings: config.key must be unique
-					ArrayList<String> addedCustomSettings = new ArrayList<>();
-
-					configsCustomSettings.forEach(customSetting ->
-					{
-						PluginSetting setting = customSetting.getSetting();
-						String customConfigName = setting.getCustomConfigName();
-						String customConfigKey = setting.getKey();
-						String customConfig = customConfigName + "." + customConfigKey;
-						if (!addedCustomSettings.contains(customConfig))
-						{
-							String value = configManager.getConfiguration(customConfigName, setting.getKey());
-							PluginSetting pluginSetting = new PluginSetting(setting.getName(), setting.getKey(), value, customConfigName, setting.getConfigName());
-							pluginSettings.add(pluginSetting);
-							addedCustomSettings.add(customConfig);
-						}
-					});
-				}
+					PluginSetting setting = customSetting.getSetting();
+					String customConfigName = setting.getCustomConfigName();
+					String value = configManager.getConfiguration(customConfigName, setting.getKey());
+					PluginSetting pluginSetting = new PluginSetting(setting.getName(), setting.getKey(), value, customConfigName, setting.getConfigName());
+					pluginSettings.add(pluginSetting);
+				});
 
 				PluginConfig pluginConfig = new PluginConfig(name, configName, enabled, pluginSettings);
 
@@ -147,11 +135,10 @@ public class PluginPresetsCurrentConfigManager
 		{
 			customRuneLiteSettings.forEach(customSetting ->
 			{
+				// Copy the setting since it belongs to a preset
 				PluginSetting setting = customSetting.getSetting();
 				String value = configManager.getConfiguration(setting.getCustomConfigName(), setting.getKey());
-				setting.setValue(value);
-
-				runelitePluginSettings.add(setting);
+				runelitePluginSettings.add(new PluginSetting(setting.getName(), setting.getKey(), value, setting.getCustomConfigName(), setting.getConfigName()));
 			});
 		}
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Counters and timings of preset storage operations, logged on debug level
+ */
+@Slf4j
+@Singleton
+public class PluginPresetsMetrics
+{
+	private final Map<String, AtomicLong> counters;
+	private final Map<String, Timer> timers;
+
+	@Inject
+	public PluginPresetsMetrics()
+	{
+		this.counters = new ConcurrentHashMap<>();
+		this.timers = new ConcurrentHashMap<>();
+	}
+
+	public void increment(final String name)
+	{
+		add(name, 1);
+	}
+
+	public void add(final String name, final long delta)
+	{
+		counters.computeIfAbsent(name, n -> new AtomicLong()).addAndGet(delta);
+	}
+
+	/**
+	 * Keeps the largest value recorded with the given name, e.g. the deepest a queue has been.
+	 */
+	public void recordMax(final String name, final long value)
+	{
+		counters.computeIfAbsent(name, n -> new AtomicLong()).accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Records time elapsed since the given start time.
+	 *
+	 * @param name       name of the timed operation
+	 * @param startNanos start time from System.nanoTime()
+	 * @return elapsed time in nanoseconds
+	 */
+	public long recordTime(final String name, final long startNanos)
+	{
+		final long elapsed = System.nanoTime() - startNanos;
+		timers.computeIfAbsent(name, n -> new Timer()).record(elapsed);
+		log.debug("{} took {} ms", name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+		return elapsed;
+	}
+
+	public void logSummary()
+	{
+		counters.forEach((name, counter) -> log.debug("{}: {}", name, counter.get()));
+		timers.forEach((name, timer) -> log.debug("{}: {}", name, timer));
+	}
+
+	private static class Timer
+	{
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+
+		synchronized void record(final long nanos)
+		{
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		@Override
+		public synchronized String toString()
+		{
+			return String.format("count %d, total %d ms, max %d ms", count,
+				TimeUnit.NANOSECONDS.toMillis(totalNanos), TimeUnit.NANOSECONDS.toMillis(maxNanos));
+		}
+	}
+}
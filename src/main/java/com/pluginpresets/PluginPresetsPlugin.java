@@ -24,10 +24,8 @@
  */
 package com.pluginpresets;
 
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.inject.Provides;
 import com.pluginpresets.ui.PluginPresetsPluginPanel;
 import java.awt.Toolkit;
 import java.awt.datatransfer.StringSelection;
@@ -36,8 +34,12 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.inject.Inject;
@@ -83,8 +85,8 @@ public class PluginPresetsPlugin extends Plugin
 	private static final String PLUGIN_NAME = "Plugin Presets";
 	private static final String ICON_FILE = "panel_icon.png";
 	private static final String CONFIG_GROUP = "pluginpresets";
-	private static final String CONFIG_KEY_PRESETS = "presets";
 	private static final String CONFIG_KEY_AUTO_UPDATE = "autoUpdate";
+	private static final long SAVE_DELAY_MS = 200;
 
 	@Getter
 	private final List<PluginPreset> pluginPresets = new ArrayList<>();
@@ -126,6 +128,19 @@ public class PluginPresetsPlugin extends Plugin
 	@Inject
 	private KeybindManager keybindManager;
 
+	@Inject
+	private FocusManager focusManager;
+
+	@Inject
+	private PluginPresetsConfig config;
+
+	@Inject
+	private ScheduledExecutorService executor;
+
+	@Getter
+	@Inject
+	private PluginPresetsMetrics metrics;
+
 	@Inject
 	private ClientToolbar clientToolbar;
 
@@ -133,7 +148,10 @@ public class PluginPresetsPlugin extends Plugin
 	private ConfigManager configManager;
 
 	@Inject
-	private Gson gson;
+	private PluginPresetSerializer serializer;
+
+	@Inject
+	private PresetConfigStore presetConfigStore;
 
 	@Inject
 	private KeyManager keyManager;
@@ -146,6 +164,7 @@ public class PluginPresetsPlugin extends Plugin
 	@Inject
 	private PluginPresetsPresetManager presetManager;
 
+	@Getter
 	@Inject
 	private PluginPresetsStorage presetStorage;
 
@@ -169,10 +188,31 @@ public class PluginPresetsPlugin extends Plugin
 	@Setter
 	private Boolean focusChangedPaused = false;
 
+	/**
+	 * Focus state that focus presets were last loaded for, null until the first focus change settles.
+	 */
+	private Boolean settledFocus;
+
+	private ScheduledFuture<?> pendingFocusLoad;
+
+	private ScheduledFuture<?> pendingSave;
+
+	/**
+	 * Save requests since the last flush and time of the first of them.
+	 */
+	private int saveRequests;
+	private long firstSaveRequest;
+
+	@Provides
+	PluginPresetsConfig provideConfig(ConfigManager configManager)
+	{
+		return configManager.getConfig(PluginPresetsConfig.class);
+	}
+
 	@Override
 	protected void startUp()
 	{
-		PluginPresetsStorage.createPresetFolder();
+		presetStorage.createPresetFolder();
 		pluginPanel = new PluginPresetsPluginPanel(this);
 
 		loadPresets();
@@ -202,14 +242,20 @@ public class PluginPresetsPlugin extends Plugin
 	@Override
 	protected void shutDown()
 	{
+		flushSaveNow();
 		pluginPresets.clear();
 		keybindManager.clearKeybinds();
+		focusManager.clearFocusPresets();
+		cancelPendingFocusLoad();
+		settledFocus = null;
 		autoUpdater = null;
 
 		presetStorage.stopWatcher();
 		clientToolbar.removeNavigation(navigationButton);
 		keyManager.unregisterKeyListener(keybindListener);
+		presetStorage.close();
 		presetStorage.deletePresetFolderIfEmpty();
+		metrics.logSummary();
 
 		pluginPanel = null;
 		presetEditor = null;
@@ -226,6 +272,18 @@ public class PluginPresetsPlugin extends Plugin
 	@Subscribe
 	public void onConfigChanged(ConfigChanged configChanged)
 	{
+		if (configChanged.getGroup().equals(PluginPresetsConfig.GROUP)
+			&& (configChanged.getKey().equals("compressPresetFiles") || configChanged.getKey().equals("presetStorage")))
+		{
+			// Rewrite local presets in the new format
+			SwingUtilities.invokeLater(() ->
+			{
+				presetStorage.markAllDirty();
+				savePresets();
+			});
+			return;
+		}
+
 		if (validConfigChange(configChanged) && !loadingPreset)
 		{
 			// When profile changes, multiple onConfigChanged events are
@@ -234,16 +292,25 @@ public class PluginPresetsPlugin extends Plugin
 			// Current configurations updater filters these out with update interval
 			// timestamp.
 			boolean updated = updateCurrentConfigurations();
-			if (updated)
+
+			// Auto updater gets every change since it only updates the changed setting,
+			// the ui is rebuilt when the updated preset is saved
+			final PluginPresetsPresetEditor updater = autoUpdater;
+			if (updater != null)
 			{
-				if (autoUpdater != null)
-				{
-					SwingUtilities.invokeLater(autoUpdater::updateAllModified);
-				}
-				else
+				final String group = configChanged.getGroup();
+				final String key = configChanged.getKey();
+				SwingUtilities.invokeLater(() ->
 				{
-					SwingUtilities.invokeLater(this::rebuildPluginUi);
-				}
+					if (!updater.updateModified(group, key) && updated)
+					{
+						rebuildPluginUi();
+					}
+				});
+			}
+			else if (updated)
+			{
+				SwingUtilities.invokeLater(this::rebuildPluginUi);
 			}
 		}
 	}
@@ -251,6 +318,8 @@ public class PluginPresetsPlugin extends Plugin
 	@Subscribe
 	public void onProfileChanged(ProfileChanged profileChanged)
 	{
+		// Saves still waiting on the debounce would write synced presets of the previous profile to the new one
+		presetConfigStore.profileChanged();
 		SwingUtilities.invokeLater(this::refreshPresets);
 	}
 
@@ -282,62 +351,51 @@ public class PluginPresetsPlugin extends Plugin
 	@Subscribe
 	public void onFocusChanged(FocusChanged focusChanged)
 	{
-		if (!focusChangedPaused)
+		if (focusChangedPaused)
 		{
-			boolean focused = focusChanged.isFocused();
-			for (PluginPreset preset : pluginPresets)
-			{
-				Boolean loadOnFocus = preset.getLoadOnFocus();
-				if (loadOnFocus != null && loadOnFocus == focused)
-				{
-					loadPreset(preset);
-				}
-			}
+			return;
 		}
+
+		// Wait for the focus to settle so that e.g. a tooltip briefly stealing
+		// focus does not load presets back and forth.
+		final boolean focused = focusChanged.isFocused();
+		cancelPendingFocusLoad();
+		pendingFocusLoad = executor.schedule(
+			() -> SwingUtilities.invokeLater(() -> loadFocusPresets(focused)),
+			config.focusSettleDelay(), TimeUnit.MILLISECONDS);
 	}
 
-	public void updateConfig()
+	private void loadFocusPresets(boolean focused)
 	{
-		List<PluginPreset> syncPresets = pluginPresets.stream()
-			.filter(preset -> !preset.getLocal())
-			.collect(Collectors.toList());
-
-		syncPresets.forEach(preset -> preset.setLocal(null));
-
-		if (syncPresets.isEmpty())
+		// Focus flapped back to the state presets were already loaded for
+		if (focusChangedPaused || (settledFocus != null && settledFocus == focused))
 		{
-			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS);
-		}
-		else
-		{
-			final String json = gson.toJson(syncPresets);
-			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS, json);
+			return;
 		}
 
-		syncPresets.forEach(preset -> preset.setLocal(false));
-
-		// If all presets are saved to config, do a refresh since...
-		// ...presetStorage folder watcher does not recognize any file change and
-		// doesn't refresh presets.
-		if (syncPresets.size() == pluginPresets.size())
+		settledFocus = focused;
+		for (PluginPreset preset : focusManager.getPresetsFor(focused))
 		{
-			refreshPresets();
+			loadPreset(preset);
 		}
 	}
 
-	private void loadConfig(String json)
+	private void cancelPendingFocusLoad()
 	{
-		if (Strings.isNullOrEmpty(json))
+		if (pendingFocusLoad != null)
 		{
-			return;
+			pendingFocusLoad.cancel(false);
+			pendingFocusLoad = null;
 		}
+	}
 
-		final List<PluginPreset> configPresetData = gson.fromJson(json, new TypeToken<ArrayList<PluginPreset>>()
-		{
-		}.getType());
+	public void updateConfig()
+	{
+		List<PluginPreset> syncPresets = pluginPresets.stream()
+			.filter(preset -> !preset.getLocal())
+			.collect(Collectors.toList());
 
-		configPresetData.forEach(preset -> preset.setLocal(false));
-		pluginPresets.addAll(configPresetData);
+		presetConfigStore.savePresets(syncPresets);
 	}
 
 	public void createPreset(String presetName, boolean empty)
@@ -361,18 +419,102 @@ public class PluginPresetsPlugin extends Plugin
 
 		pluginPresets.add(preset);
 
+		savePreset(preset);
+	}
+
+	/**
+	 * Marks preset as changed and saves presets.
+	 */
+	public void savePreset(final PluginPreset preset)
+	{
+		markDirty(preset);
 		savePresets();
 	}
 
 	/**
-	 * Saves presets to preset folder and RuneLite config.
-	 * Changes in preset directory or config causes refreshPresets() to run.
+	 * Marks preset to be written on the next save, wherever it is stored.
+	 */
+	public void markDirty(final PluginPreset preset)
+	{
+		presetStorage.markDirty(preset);
+		presetConfigStore.markDirty(preset);
+	}
+
+	/**
+	 * Saves changed presets to preset folder and RuneLite config once no other save has been
+	 * requested for SAVE_DELAY_MS, so that many changes in a row are saved at once.
+	 * Presets in memory are not reloaded after the save, see updatePresets().
 	 */
-	@SneakyThrows
 	public void savePresets()
 	{
-		presetStorage.savePresets(pluginPresets);
+		focusManager.cacheFocusPresets(pluginPresets);
+
+		if (saveRequests++ == 0)
+		{
+			firstSaveRequest = System.nanoTime();
+		}
+		metrics.increment("save.requests");
+
+		cancelPendingSave();
+		pendingSave = executor.schedule(
+			() -> SwingUtilities.invokeLater(this::flushSave),
+			SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Serializes changed presets and writes them to preset folder on a background thread.
+	 */
+	private void flushSave()
+	{
+		if (!queueSave())
+		{
+			return;
+		}
+
+		final long requested = firstSaveRequest;
+		presetStorage.writePendingSavesAsync(() -> metrics.recordTime("save.latency", requested));
 		updateConfig();
+		updatePresets();
+	}
+
+	/**
+	 * Writes pending saves to preset folder before returning, e.g. before presets are loaded again.
+	 */
+	private void flushSaveNow()
+	{
+		if (queueSave())
+		{
+			updateConfig();
+		}
+		presetStorage.writePendingSaves();
+	}
+
+	/**
+	 * @return false if there were no save requests to queue
+	 */
+	private boolean queueSave()
+	{
+		cancelPendingSave();
+		if (saveRequests == 0)
+		{
+			return false;
+		}
+
+		metrics.add("save.coalesced", saveRequests - 1);
+		saveRequests = 0;
+
+		presetStorage.queueSave(pluginPresets);
+		metrics.recordMax("save.maxQueueDepth", presetStorage.getPendingSaveCount());
+		return true;
+	}
+
+	private void cancelPendingSave()
+	{
+		if (pendingSave != null)
+		{
+			pendingSave.cancel(false);
+			pendingSave = null;
+		}
 	}
 
 	/**
@@ -380,6 +522,7 @@ public class PluginPresetsPlugin extends Plugin
 	 */
 	public void refreshPresets()
 	{
+		flushSaveNow();
 		pluginPresets.clear();
 		loadPresets();
 		rebuildPluginUi();
@@ -391,6 +534,80 @@ public class PluginPresetsPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Reloads presets from the changed preset files and updates them in memory.
+	 * Presets from RuneLite config and other preset files are kept as they are.
+	 *
+	 * @param changedFiles names of the changed files in preset folder
+	 */
+	@SneakyThrows
+	public void refreshPresets(final Collection<String> changedFiles)
+	{
+		flushSaveNow();
+		PluginPresetsStorage.PresetChanges changes = presetStorage.reloadPresets(changedFiles);
+		if (changes.getLoadedPresets().isEmpty() && changes.getRemovedIds().isEmpty())
+		{
+			return;
+		}
+
+		for (long id : changes.getRemovedIds())
+		{
+			PluginPreset removed = getLocalPreset(id);
+			if (removed != null)
+			{
+				pluginPresets.remove(removed);
+				keybindManager.removePreset(removed);
+				customSettingsManager.removeCustomSettings(removed);
+			}
+		}
+
+		for (PluginPreset preset : changes.getLoadedPresets())
+		{
+			PluginPreset previous = getLocalPreset(preset.getId());
+			if (previous != null)
+			{
+				pluginPresets.set(pluginPresets.indexOf(previous), preset);
+				keybindManager.removePreset(previous);
+				customSettingsManager.removeCustomSettings(previous);
+			}
+			else
+			{
+				pluginPresets.add(preset);
+			}
+			keybindManager.addPreset(preset);
+			customSettingsManager.addCustomSettings(preset);
+		}
+
+		pluginPresets.sort(Comparator.comparing(PluginPreset::getName)); // Keep presets in order
+		focusManager.cacheFocusPresets(pluginPresets);
+		rebuildPluginUi();
+	}
+
+	/**
+	 * Updates preset order, keybinds, custom settings, focus presets and ui from the presets in memory,
+	 * e.g. after this client changed presets. Changes made outside this client are loaded with refreshPresets.
+	 */
+	public void updatePresets()
+	{
+		pluginPresets.sort(Comparator.comparing(PluginPreset::getName)); // Keep presets in order
+		customSettingsManager.updateCustomSettings(pluginPresets);
+		keybindManager.cacheKeybinds(pluginPresets);
+		focusManager.cacheFocusPresets(pluginPresets);
+		rebuildPluginUi();
+	}
+
+	private PluginPreset getLocalPreset(long id)
+	{
+		for (PluginPreset preset : pluginPresets)
+		{
+			if (preset.getId() == id && preset.getLocal())
+			{
+				return preset;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Loads preset and updates current configurations.
 	 */
@@ -451,10 +668,11 @@ public class PluginPresetsPlugin extends Plugin
 	public void loadPresets()
 	{
 		pluginPresets.addAll(presetStorage.loadPresets());
-		loadConfig(configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS));
+		pluginPresets.addAll(presetConfigStore.loadPresets());
 		pluginPresets.sort(Comparator.comparing(PluginPreset::getName)); // Keep presets in order
 		customSettingsManager.parseCustomSettings(pluginPresets);
 		keybindManager.cacheKeybinds(pluginPresets);
+		focusManager.cacheFocusPresets(pluginPresets);
 	}
 
 	private void setupAutoUpdater()
@@ -491,21 +709,27 @@ public class PluginPresetsPlugin extends Plugin
 	{
 		if (id == null)
 		{
-			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE);
+			if (configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE) != null)
+			{
+				configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE);
+			}
 			setAutoUpdater(null);
 			rebuildPluginUi();
 		}
 		else
 		{
 			boolean doRefresh = false;
-			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE, id);
+			if (!String.valueOf(id).equals(configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE)))
+			{
+				configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE, id);
+			}
 			for (PluginPreset p : pluginPresets)
 			{
 				if (p.getId() == id)
 				{
 					p.setAutoUpdated(true);
 					doRefresh = true;
-					savePresets();
+					savePreset(p);
 				}
 			}
 
@@ -519,17 +743,35 @@ public class PluginPresetsPlugin extends Plugin
 
 	}
 
+	public void renamePreset(PluginPreset preset, String name)
+	{
+		preset.setName(name);
+		savePreset(preset);
+	}
+
+	public void setPresetKeybind(PluginPreset preset, Keybind keybind)
+	{
+		preset.setKeybind(keybind);
+		savePreset(preset);
+	}
+
+	public void setPresetLoadOnFocus(PluginPreset preset, Boolean loadOnFocus)
+	{
+		preset.setLoadOnFocus(loadOnFocus);
+		savePreset(preset);
+	}
+
 	public void addAutoUpdateFrom(PluginPreset preset)
 	{
 		preset.setAutoUpdated(true);
-		savePresets();
+		savePreset(preset);
 		rebuildPluginUi();
 	}
 
 	public void removeAutoUpdateFrom(PluginPreset preset)
 	{
 		preset.setAutoUpdated(null);
-		savePresets();
+		savePreset(preset);
 		rebuildPluginUi();
 	}
 
@@ -550,8 +792,8 @@ public class PluginPresetsPlugin extends Plugin
 			newPreset.setLocal(true); // Presets are imported to /presets folder
 
 			pluginPresets.add(newPreset);
-			savePresets();
-			refreshPresets();
+			savePreset(newPreset);
+			updatePresets();
 		}
 		else
 		{
@@ -565,13 +807,13 @@ public class PluginPresetsPlugin extends Plugin
 		newPreset.setPluginConfigs(preset.getPluginConfigs());
 
 		pluginPresets.add(newPreset);
-		savePresets();
-		refreshPresets();
+		savePreset(newPreset);
+		updatePresets();
 	}
 
 	public void exportPresetToClipboard(final PluginPreset preset)
 	{
-		final String json = gson.toJson(preset);
+		final String json = serializer.toJson(preset);
 		final StringSelection contents = new StringSelection(json);
 		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(contents, null);
 	}
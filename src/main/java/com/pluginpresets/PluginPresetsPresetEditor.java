@@ -27,13 +27,17 @@ package com.pluginpresets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.RuneLiteConfig;
+import net.runelite.client.plugins.Plugin;
 
 /**
  * Handles updating a preset: enabling/disabling plugin configs and their individual settings.
  * Globally saves changes to the preset if needed.
+ * <p>
+ * Changes are made in edits that are started with begin() and ended with commit(). Edits started while another
+ * edit is open join it, so an action that makes many changes saves the preset only once.
  */
 @Slf4j
 public class PluginPresetsPresetEditor
@@ -44,38 +48,79 @@ public class PluginPresetsPresetEditor
 	@Getter
 	private final PluginPreset editedPreset;
 
+	/**
+	 * Number of open edits, the preset is saved when the outermost edit is committed.
+	 */
+	private int editDepth;
+
+	/**
+	 * True when the open edit has changed the preset.
+	 */
+	private boolean edited;
+
 	public PluginPresetsPresetEditor(PluginPresetsPlugin plugin, PluginPreset editedPreset, CurrentConfigurations currentConfigurations)
 	{
 		this.plugin = plugin;
 		this.editedPreset = editedPreset;
 		this.currentConfigurations = currentConfigurations;
+		editedPreset.clearChangedConfigs();
 	}
 
 	/**
-	 * Removes the given plugin config from the preset.
-	 * Switching to this preset will not affect any of the plugin's settings from this point on.
-	 *
-	 * @param configuration the plugin to remove from this preset
+	 * Starts an edit. If an edit is already open, changes are saved when that edit is committed.
 	 */
-	public void removeConfigurationFromEdited(PluginConfig configuration)
+	public void begin()
 	{
-		removeConfigurationFromEdited(configuration, false);
+		editDepth++;
 	}
 
-	private void removeConfigurationFromEdited(PluginConfig configuration, Boolean skipUpdate)
+	/**
+	 * Ends an edit started with begin(). Ending the outermost edit saves the preset if it was changed.
+	 */
+	public void commit()
 	{
-		List<PluginConfig> pluginConfigs = editedPreset.getPluginConfigs().stream()
-			.filter(c -> !(c.getName().equals(configuration.getName())))
-			.collect(Collectors.toList());
-
-		editedPreset.setPluginConfigs(pluginConfigs);
+		if (editDepth == 0)
+		{
+			throw new IllegalStateException("No edit to commit");
+		}
 
-		if (!skipUpdate)
+		editDepth--;
+		if (editDepth == 0 && edited)
 		{
+			edited = false;
 			updateEditedPreset();
 		}
 	}
 
+	/**
+	 * Runs the change as an edit of the preset. The edit counts as a change only if the preset's version changed.
+	 */
+	private void edit(Runnable change)
+	{
+		final long version = editedPreset.getVersion();
+		begin();
+		try
+		{
+			change.run();
+			edited = edited || editedPreset.getVersion() != version;
+		}
+		finally
+		{
+			commit();
+		}
+	}
+
+	/**
+	 * Removes the given plugin config from the preset.
+	 * Switching to this preset will not affect any of the plugin's settings from this point on.
+	 *
+	 * @param configuration the plugin to remove from this preset
+	 */
+	public void removeConfigurationFromEdited(PluginConfig configuration)
+	{
+		edit(() -> editedPreset.removeConfig(configuration.getName()));
+	}
+
 	/**
 	 * Adds the given plugin config to the preset.
 	 * Switching to this preset changes some or all the plugin's settings to whatever the preset has saved.
@@ -84,19 +129,7 @@ public class PluginPresetsPresetEditor
 	 */
 	public void addConfigurationToEdited(PluginConfig configuration)
 	{
-		addConfigurationToEdited(configuration, false);
-	}
-
-	private void addConfigurationToEdited(PluginConfig configuration, Boolean skipUpdate)
-	{
-		List<PluginConfig> pluginConfigs = editedPreset.getPluginConfigs();
-		pluginConfigs.add(configuration);
-		editedPreset.setPluginConfigs(pluginConfigs);
-
-		if (!skipUpdate)
-		{
-			updateEditedPreset();
-		}
+		edit(() -> editedPreset.putConfig(configuration));
 	}
 
 	/**
@@ -108,22 +141,44 @@ public class PluginPresetsPresetEditor
 	 */
 	public void removeSettingFromEdited(PluginConfig currentConfig, PluginSetting setting)
 	{
-		editedPreset.getPluginConfigs().forEach(configuration ->
+		edit(() ->
 		{
-			boolean configToBeRemoved = currentConfig == null || configuration.getName().equals(currentConfig.getName());
-			if (configToBeRemoved)
+			if (currentConfig == null)
 			{
-				List<PluginSetting> settings = configuration.getSettings().stream().filter((s -> !s.getKey().equals(setting.getKey()))).collect(Collectors.toList());
-				configuration.setSettings(settings);
-
-				boolean lastSetting = configuration.getSettings().isEmpty() && configuration.getEnabled() == null;
-				if (lastSetting)
+				for (PluginConfig configuration : new ArrayList<>(editedPreset.getPluginConfigs()))
+				{
+					removeSetting(configuration, setting);
+				}
+			}
+			else
+			{
+				PluginConfig configuration = editedPreset.getConfig(currentConfig.getName());
+				if (configuration != null)
 				{
-					removeConfigurationFromEdited(configuration);
+					removeSetting(configuration, setting);
 				}
 			}
 		});
-		updateEditedPreset();
+	}
+
+	private void removeSetting(PluginConfig configuration, PluginSetting setting)
+	{
+		if (!configuration.hasSetting(setting.getKey()))
+		{
+			return;
+		}
+
+		PluginConfig changed = configuration.withoutSetting(setting.getKey());
+
+		boolean lastSetting = changed.getSettings().isEmpty() && changed.getEnabled() == null;
+		if (lastSetting)
+		{
+			removeConfigurationFromEdited(changed);
+		}
+		else
+		{
+			editedPreset.putConfig(changed);
+		}
 	}
 
 	/**
@@ -135,25 +190,21 @@ public class PluginPresetsPresetEditor
 	 */
 	public void addSettingToEdited(PluginConfig currentConfig, PluginSetting setting)
 	{
-		boolean noneMatch = editedPreset.getPluginConfigs().stream().noneMatch(c -> c.getName().equals(currentConfig.getName()));
-		if (noneMatch)
-		{
-			ArrayList<PluginSetting> settings = new ArrayList<>();
-			settings.add(setting);
-			PluginConfig pluginConfig = new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), null, settings);
-			editedPreset.getPluginConfigs().add(pluginConfig);
-		}
-		else
+		edit(() ->
 		{
-			editedPreset.getPluginConfigs().forEach(configuration ->
+			PluginConfig configuration = editedPreset.getConfig(currentConfig.getName());
+			if (configuration == null)
 			{
-				if (configuration.getName().equals(currentConfig.getName()))
-				{
-					configuration.getSettings().add(setting);
-				}
-			});
-		}
-		updateEditedPreset();
+				ArrayList<PluginSetting> settings = new ArrayList<>();
+				settings.add(setting);
+				PluginConfig pluginConfig = new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), null, settings);
+				editedPreset.putConfig(pluginConfig);
+			}
+			else
+			{
+				editedPreset.putConfig(configuration.withSetting(setting));
+			}
+		});
 	}
 
 	/**
@@ -182,10 +233,7 @@ public class PluginPresetsPresetEditor
 			return;
 		}
 
-		PluginConfig config = editedPreset.getPluginConfigs().stream()
-			.filter(customer -> customer.getConfigName().equals(currentConfig.getConfigName()))
-			.findAny()
-			.orElse(null);
+		PluginConfig config = editedPreset.getConfig(currentConfig.getName());
 
 		if (config == null)
 		{
@@ -196,7 +244,6 @@ public class PluginPresetsPresetEditor
 					config = new PluginConfig(c.getName(), c.getConfigName(), null, new ArrayList<>());
 				}
 			}
-			editedPreset.getPluginConfigs().add(config);
 		}
 
 		if (config == null)
@@ -205,15 +252,25 @@ public class PluginPresetsPresetEditor
 			return;
 		}
 
+		// don't add this setting if its key is already present
+		if (config.hasSetting(key))
+		{
+			return;
+		}
+
 		String value = plugin.getPresetManager().getConfiguration(configName, key);
 		PluginSetting setting = new PluginSetting(PluginPresetsUtils.splitAndCapitalize(key), key, value, configName, config.getConfigName());
 
-		// don't add this setting if its key is already present
-		if (config.getSetting(setting) == null)
+		PluginConfig changed = config.withSetting(setting);
+		edit(() -> editedPreset.putConfig(changed));
+
+		// Register the setting and show it in current configurations of the plugin,
+		// other plugins and presets are not affected
+		plugin.getCustomSettingsManager().addCustomSetting(editedPreset, changed, setting);
+		PluginConfig current = currentConfigurations.getConfig(changed.getName());
+		if (current != null && !current.hasSetting(key))
 		{
-			config.getSettings().add(setting);
-			updateEditedPreset();
-			plugin.refreshPresets(); // Must do refresh to reload custom configs
+			currentConfigurations.putConfig(current.withSetting(new PluginSetting(setting.getName(), key, value, configName, setting.getConfigName())));
 		}
 	}
 
@@ -225,24 +282,20 @@ public class PluginPresetsPresetEditor
 	 */
 	public void addEnabledToEdited(PluginConfig currentConfig)
 	{
-		boolean noneMatch = editedPreset.getPluginConfigs().stream().noneMatch(c -> currentConfig.getName().equals(c.getName()));
-		if (noneMatch)
-		{
-			ArrayList<PluginSetting> settings = new ArrayList<>();
-			PluginConfig pluginConfig = new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), currentConfig.getEnabled(), settings);
-			editedPreset.getPluginConfigs().add(pluginConfig);
-		}
-		else
+		edit(() ->
 		{
-			editedPreset.getPluginConfigs().forEach(configuration ->
+			PluginConfig configuration = editedPreset.getConfig(currentConfig.getName());
+			if (configuration == null)
 			{
-				if (configuration.getName().equals(currentConfig.getName()))
-				{
-					configuration.setEnabled(currentConfig.getEnabled());
-				}
-			});
-		}
-		updateEditedPreset();
+				ArrayList<PluginSetting> settings = new ArrayList<>();
+				PluginConfig pluginConfig = new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), currentConfig.getEnabled(), settings);
+				editedPreset.putConfig(pluginConfig);
+			}
+			else
+			{
+				editedPreset.putConfig(configuration.withEnabled(currentConfig.getEnabled()));
+			}
+		});
 	}
 
 	/**
@@ -253,61 +306,142 @@ public class PluginPresetsPresetEditor
 	 */
 	public void removeEnabledFromEdited(PluginConfig currentConfig)
 	{
-		editedPreset.getPluginConfigs().forEach(configurations ->
+		edit(() ->
 		{
-			if (configurations.getName().equals(currentConfig.getName()))
+			PluginConfig configuration = editedPreset.getConfig(currentConfig.getName());
+			if (configuration == null)
 			{
-				configurations.setEnabled(null);
-				if (configurations.getSettings().isEmpty())
-				{
-					removeConfigurationFromEdited(configurations);
-				}
+				return;
 			}
-		});
 
-		updateEditedPreset();
+			if (configuration.getSettings().isEmpty())
+			{
+				removeConfigurationFromEdited(configuration);
+			}
+			else
+			{
+				editedPreset.putConfig(configuration.withEnabled(null));
+			}
+		});
 	}
 
 	/**
 	 * Adds the config for the given plugin in all the user's presets.
+	 * Configs can not be changed, so all presets share the given config.
+	 * Presets whose plugin configs could not be loaded are left as they are.
 	 *
 	 * @param configuration the plugin config to add to all presets
 	 */
 	public void addConfigurationToPresets(PluginConfig configuration)
 	{
-		addConfigurationToEdited(configuration);
+		final long start = System.nanoTime();
+		if (isUnavailable(editedPreset))
+		{
+			return;
+		}
 
-		plugin.getPluginPresets().forEach(preset ->
+		edit(() ->
 		{
-			boolean contains = preset.getPluginConfigs().stream().map(PluginConfig::getName).collect(Collectors.toList()).contains(configuration.getName());
-			if (contains)
+			editedPreset.putConfig(configuration);
+			// Loading other presets below may unload bodies, the changed body must stay loaded until saved
+			plugin.markDirty(editedPreset);
+			int skipped = 0;
+			for (PluginPreset preset : plugin.getPluginPresets())
 			{
-				List<PluginConfig> pluginConfigs = preset.getPluginConfigs().stream()
-					.filter(c -> !(c.getName().equals(configuration.getName())))
-					.collect(Collectors.toList());
-				preset.setPluginConfigs(pluginConfigs);
+				if (preset == editedPreset)
+				{
+					continue;
+				}
+
+				if (isUnavailable(preset))
+				{
+					skipped++;
+					continue;
+				}
+
+				preset.putConfig(configuration);
+				plugin.markDirty(preset);
+				// Other presets are saved with the edited one even if it already had the config
+				edited = true;
 			}
-			preset.getPluginConfigs().add(configuration);
+			reportSkipped(skipped);
 		});
+
+		plugin.getMetrics().recordTime("editor.addToPresets", start);
 	}
 
 	/**
 	 * Removes the config for the given plugin from all the user's presets.
+	 * Presets whose plugin configs could not be loaded are left as they are.
 	 *
 	 * @param configuration the plugin config to remove from all presets
 	 */
 	public void removeConfigurationFromPresets(PluginConfig configuration)
 	{
-		removeConfigurationFromEdited(configuration);
+		final long start = System.nanoTime();
+		final String pluginName = configuration.getName();
+		if (isUnavailable(editedPreset))
+		{
+			return;
+		}
 
-		plugin.getPluginPresets().forEach(preset ->
+		edit(() ->
 		{
-			List<PluginConfig> pluginConfigs = preset.getPluginConfigs().stream()
-				.filter(c -> !(c.getName().equals(configuration.getName())))
-				.collect(Collectors.toList());
-			preset.setPluginConfigs(pluginConfigs);
+			if (editedPreset.removeConfig(pluginName) != null)
+			{
+				// Loading other presets below may unload bodies, the changed body must stay loaded until saved
+				plugin.markDirty(editedPreset);
+			}
+			int skipped = 0;
+			for (PluginPreset preset : plugin.getPluginPresets())
+			{
+				if (preset == editedPreset)
+				{
+					continue;
+				}
+
+				if (isUnavailable(preset))
+				{
+					skipped++;
+				}
+				else if (preset.removeConfig(pluginName) != null)
+				{
+					plugin.markDirty(preset);
+					edited = true;
+				}
+			}
+			reportSkipped(skipped);
 		});
-		plugin.savePresets();
+
+		plugin.getMetrics().recordTime("editor.removeFromPresets", start);
+	}
+
+	/**
+	 * Loads plugin configs of the preset if they are not loaded.
+	 *
+	 * @return true if they could not be loaded, in which case the preset can not be changed
+	 */
+	private boolean isUnavailable(PluginPreset preset)
+	{
+		preset.getPluginConfigs();
+		if (preset.isBodyUnavailable())
+		{
+			log.warn("Plugin configurations of preset {} could not be loaded, the preset was not changed", preset.getName());
+			if (preset == editedPreset)
+			{
+				plugin.renderPanelErrorNotification("Preset " + preset.getName() + " could not be loaded, it was not changed.");
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void reportSkipped(int skipped)
+	{
+		if (skipped > 0)
+		{
+			plugin.renderPanelErrorNotification(skipped + " presets could not be loaded, they were not changed.");
+		}
 	}
 
 	/**
@@ -318,21 +452,29 @@ public class PluginPresetsPresetEditor
 	 */
 	public void updateConfigurations(PluginConfig presetConfig, PluginConfig currentConfig)
 	{
-		removeConfigurationFromEdited(presetConfig, true);
-		List<String> presetConfigKeys = presetConfig.getSettingKeys();
-		List<PluginSetting> currentSettings = currentConfig.getSettings().stream()
-			.filter(s -> presetConfigKeys.contains(s.getKey()))
-			.collect(Collectors.toList());
-
-		currentConfig.setSettings(currentSettings);
+		edit(() ->
+		{
+			removeConfigurationFromEdited(presetConfig);
+			addConfigurationToEdited(withCurrentValues(presetConfig, currentConfig));
+		});
+	}
 
-		if (presetConfig.getEnabled() == null)
+	/**
+	 * @return a new config with the current values of the settings and on/off status that presetConfig contains
+	 */
+	private static PluginConfig withCurrentValues(PluginConfig presetConfig, PluginConfig currentConfig)
+	{
+		List<PluginSetting> settings = new ArrayList<>();
+		for (PluginSetting setting : currentConfig.getSettings())
 		{
-			currentConfig.setEnabled(null);
+			if (presetConfig.hasSetting(setting.getKey()))
+			{
+				settings.add(setting);
+			}
 		}
 
-		addConfigurationToEdited(currentConfig, true);
-		updateEditedPreset();
+		Boolean enabled = presetConfig.getEnabled() == null ? null : currentConfig.getEnabled();
+		return new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), enabled, settings);
 	}
 
 	/**
@@ -340,46 +482,73 @@ public class PluginPresetsPresetEditor
 	 */
 	public void updateAllModified()
 	{
-		for (PluginConfig presetConfig : editedPreset.getPluginConfigs())
+		edit(() ->
 		{
-			PluginConfig currentConfig = currentConfigurations
-				.getPluginConfigs()
-				.stream()
-				.filter(c -> c.getName().equals(presetConfig.getName()))
-				.findAny()
-				.orElse(null);
-
-			removeConfigurationFromEdited(presetConfig, true);
-
-			List<String> keys = presetConfig
-				.getSettings()
-				.stream()
-				.map(PluginSetting::getKey)
-				.collect(Collectors.toList());
-
-			if (currentConfig == null)
+			// Replacing a config keeps its place, so the preset can be modified while iterating it
+			for (PluginConfig presetConfig : editedPreset.getPluginConfigs())
 			{
-				addConfigurationToEdited(presetConfig, true);
-				continue;
+				PluginConfig currentConfig = currentConfigurations.getConfig(presetConfig.getName());
+				if (currentConfig != null)
+				{
+					addConfigurationToEdited(withCurrentValues(presetConfig, currentConfig));
+				}
 			}
+		});
+	}
 
-			List<PluginSetting> updatedSettings = currentConfig
-				.getSettings()
-				.stream()
-				.filter(s -> keys.contains(s.getKey()))
-				.collect(Collectors.toList());
+	/**
+	 * Updates a single changed configuration in this preset to its current value, leaving the rest of the preset as it is.
+	 * Only settings and on/off statuses that the preset already contains are updated.
+	 *
+	 * @param group config group of the changed configuration
+	 * @param key   key of the changed configuration
+	 * @return true if the preset was changed
+	 */
+	public boolean updateModified(String group, String key)
+	{
+		boolean updated = false;
+		begin();
+		try
+		{
+			PluginPresetsPresetManager presetManager = plugin.getPresetManager();
 
-			currentConfig.setSettings(updatedSettings);
+			// Replacing a config keeps its place, so the preset can be modified while iterating it
+			for (PluginConfig presetConfig : editedPreset.getPluginConfigs())
+			{
+				PluginSetting setting = presetConfig.getSetting(key);
+				if (setting == null)
+				{
+					continue;
+				}
 
-			if (presetConfig.getEnabled() == null)
+				String settingGroup = setting.getCustomConfigName() != null ? setting.getCustomConfigName() : presetConfig.getConfigName();
+				String value = presetManager.getConfiguration(group, key);
+				if (group.equals(settingGroup) && !Objects.equals(value, setting.getValue()))
+				{
+					editedPreset.putConfig(presetConfig.withSetting(new PluginSetting(setting.getName(), key, value, setting.getCustomConfigName(), setting.getConfigName())));
+					updated = true;
+				}
+			}
+
+			Plugin changedPlugin = RuneLiteConfig.GROUP_NAME.equals(group) ? presetManager.getPluginForEnabledKey(key) : null;
+			if (changedPlugin != null)
 			{
-				currentConfig.setEnabled(null);
+				PluginConfig presetConfig = editedPreset.getConfig(changedPlugin.getName());
+				boolean enabled = presetManager.isPluginEnabled(changedPlugin);
+				if (presetConfig != null && presetConfig.getEnabled() != null && presetConfig.getEnabled() != enabled)
+				{
+					editedPreset.putConfig(presetConfig.withEnabled(enabled));
+					updated = true;
+				}
 			}
 
-			addConfigurationToEdited(currentConfig, true);
+			edited = edited || updated;
 		}
-
-		updateEditedPreset();
+		finally
+		{
+			commit();
+		}
+		return updated;
 	}
 
 	/**
@@ -389,12 +558,7 @@ public class PluginPresetsPresetEditor
 	 */
 	public void addAll(List<PluginConfig> pluginConfigs)
 	{
-		for (PluginConfig pluginConfig : pluginConfigs)
-		{
-			removeConfigurationFromEdited(pluginConfig, true);
-			addConfigurationToEdited(pluginConfig, true);
-		}
-		updateEditedPreset();
+		edit(() -> pluginConfigs.forEach(this::addConfigurationToEdited));
 	}
 
 	/**
@@ -404,11 +568,7 @@ public class PluginPresetsPresetEditor
 	 */
 	public void removeAll(List<PluginConfig> pluginConfigs)
 	{
-		for (PluginConfig pluginConfig : pluginConfigs)
-		{
-			removeConfigurationFromEdited(pluginConfig, true);
-		}
-		updateEditedPreset();
+		edit(() -> pluginConfigs.forEach(this::removeConfigurationFromEdited));
 	}
 
 	/**
@@ -416,8 +576,7 @@ public class PluginPresetsPresetEditor
 	 */
 	public void toggleLocal()
 	{
-		editedPreset.setLocal(!editedPreset.getLocal());
-		updateEditedPreset();
+		edit(() -> editedPreset.setLocal(!editedPreset.getLocal()));
 	}
 
 	private PluginPreset getPresetBeingEdited()
@@ -435,22 +594,48 @@ public class PluginPresetsPresetEditor
 
 	public void syncAutoUpdate()
 	{
-		editedPreset.setAutoUpdated(Objects.requireNonNull(getPresetBeingEdited()).getAutoUpdated());
-		updateEditedPreset();
+		edit(() ->
+		{
+			Boolean autoUpdated = Objects.requireNonNull(getPresetBeingEdited()).getAutoUpdated();
+			if (!Objects.equals(autoUpdated, editedPreset.getAutoUpdated()))
+			{
+				editedPreset.setAutoUpdated(autoUpdated);
+			}
+		});
 	}
 
 	/**
 	 * Update edited presets plugin configs in pluginPresets and then save.
 	 */
-	public void updateEditedPreset()
+	private void updateEditedPreset()
 	{
 		PluginPreset preset = getPresetBeingEdited();
 		if (preset != null)
 		{
-			preset.setPluginConfigs(editedPreset.getPluginConfigs());
+			if (preset != editedPreset)
+			{
+				// The preset was reloaded while editing, apply only the configs changed in this editor
+				for (String pluginName : editedPreset.getChangedConfigs())
+				{
+					PluginConfig config = editedPreset.getConfig(pluginName);
+					if (config == null)
+					{
+						preset.removeConfig(pluginName);
+					}
+					else
+					{
+						preset.putConfig(config);
+					}
+				}
+			}
+			editedPreset.clearChangedConfigs();
 			preset.setAutoUpdated(editedPreset.getAutoUpdated());
 			preset.setLocal(editedPreset.getLocal());
+			plugin.savePreset(preset);
+		}
+		else
+		{
+			plugin.savePresets();
 		}
-		plugin.savePresets();
 	}
 }
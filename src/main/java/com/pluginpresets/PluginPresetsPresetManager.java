@@ -152,6 +152,29 @@ public class PluginPresetsPresetManager
 		}
 	}
 
+	/**
+	 * Finds the plugin whose on/off status is saved with the given key in RuneLite config group.
+	 *
+	 * @param key key in RuneLite config group
+	 * @return the plugin or null if the key is not an on/off status of a plugin
+	 */
+	public Plugin getPluginForEnabledKey(String key)
+	{
+		for (Plugin p : pluginManager.getPlugins())
+		{
+			if (p.getClass().getSimpleName().toLowerCase().equals(key))
+			{
+				return p;
+			}
+		}
+		return null;
+	}
+
+	public boolean isPluginEnabled(Plugin plugin)
+	{
+		return pluginManager.isPluginEnabled(plugin);
+	}
+
 	private Plugin findPlugin(String plugin, Collection<Plugin> plugins)
 	{
 		for (Plugin p : plugins)
@@ -24,273 +24,1130 @@
  */
 package com.pluginpresets;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
-import java.io.Writer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.*;
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.swing.SwingUtilities;
 
-import lombok.SneakyThrows;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import static java.nio.file.StandardOpenOption.*;
-
 @Slf4j
 public class PluginPresetsStorage
 {
-	private static final File PRESETS_DIR = PluginPresetsPlugin.PRESETS_DIR;
-	private static final File LOCK_FILE = new File(PRESETS_DIR, "lock");
+	private static final String LOCK_FILE_NAME = "lock";
+	private static final String LOG_FILE_NAME = "presets.db";
+	private static final String INDEX_FILE_NAME = "index";
+	private static final String PRESET_FILE_EXTENSION = ".json";
+	private static final String COMPRESSED_FILE_EXTENSION = ".json.gz";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int PARSE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static final long WRITE_TIMEOUT_MS = 10000;
+	private static final long WRITE_RETRY_DELAY_MS = 1000;
+	private static final long MAX_SETTLE_MS = 10000;
 
 	private final List<String> failedFileNames = new ArrayList<>();
+	/**
+	 * Files of the local presets, by preset id, as they currently are in the preset folder.
+	 */
+	private final Map<Long, File> presetFiles = new ConcurrentHashMap<>();
+	/**
+	 * Ids of presets that have changed since the last save.
+	 */
+	private final Set<Long> dirtyPresetIds = ConcurrentHashMap.newKeySet();
+	/**
+	 * Ids of presets in queued saves that are not yet written, with the number of such saves. Their bodies are
+	 * not unloaded, since a body loaded again before the write would not have the queued changes.
+	 */
+	private final Map<Long, Integer> queuedPresetIds = new ConcurrentHashMap<>();
+	/**
+	 * Saves waiting to be written, oldest first.
+	 */
+	private final Queue<PendingSave> pendingSaves = new ConcurrentLinkedQueue<>();
+	/**
+	 * Files written and deleted by this client, used by the folder watcher to ignore its own changes.
+	 */
+	private final Map<String, FileStamp> writtenFiles = new ConcurrentHashMap<>();
+	private final Set<String> deletedFiles = ConcurrentHashMap.newKeySet();
+	/**
+	 * Files that this client is writing in place, which the folder watcher ignores until they are recorded in writtenFiles.
+	 */
+	private final Set<String> writingFiles = ConcurrentHashMap.newKeySet();
+	/**
+	 * Local presets whose pluginConfigs were loaded after the preset header, by preset id.
+	 */
+	private final Map<Long, PluginPreset> loadedBodies = new HashMap<>();
 	private final PluginPresetsPlugin plugin;
+	private final PluginPresetsMetrics metrics;
+	private final PresetFolderLock folderLock;
+	private final PresetLogStore logStore;
+	private final PresetFileIndex fileIndex;
+	private final PluginPresetSerializer serializer;
+	private final File presetsDir;
+	private final File lockFile;
+	private final File logFile;
+	private final File indexFile;
+	private final PluginPresetsConfig config;
 
-	@Inject
-	private Gson gson;
-	
 	private Thread thread;
 	private WatchService watcher;
+	private ExecutorService parseExecutor;
+	private ScheduledThreadPoolExecutor writeExecutor;
 
 	@Inject
-	public PluginPresetsStorage(PluginPresetsPlugin plugin)
+	public PluginPresetsStorage(PluginPresetsPlugin plugin, PluginPresetsConfig config, PluginPresetsMetrics metrics, PluginPresetSerializer serializer)
+	{
+		this(PluginPresetsPlugin.PRESETS_DIR, plugin, config, metrics, serializer);
+	}
+
+	/**
+	 * @param presetsDir the preset folder
+	 */
+	PluginPresetsStorage(File presetsDir, PluginPresetsPlugin plugin, PluginPresetsConfig config, PluginPresetsMetrics metrics,
+		PluginPresetSerializer serializer)
 	{
 		this.plugin = plugin;
+		this.config = config;
+		this.metrics = metrics;
+		this.serializer = serializer;
+		this.presetsDir = presetsDir;
+		this.lockFile = new File(presetsDir, LOCK_FILE_NAME);
+		this.logFile = new File(presetsDir, LOG_FILE_NAME);
+		this.indexFile = new File(presetsDir, INDEX_FILE_NAME);
+		this.folderLock = new PresetFolderLock(lockFile, metrics);
+		this.logStore = new PresetLogStore(logFile, serializer, this::loadBody);
+		this.fileIndex = new PresetFileIndex(indexFile, serializer);
+	}
+
+	private static boolean isLockFile(File file)
+	{
+		return file.getName().equals(LOCK_FILE_NAME);
+	}
+
+	private static boolean isLogFile(File file)
+	{
+		return file.getName().equals(LOG_FILE_NAME);
+	}
+
+	private static boolean isIndexFile(File file)
+	{
+		return file.getName().equals(INDEX_FILE_NAME);
+	}
+
+	/**
+	 * @return false for the lock, single preset, index and temporary files
+	 */
+	private static boolean isPresetFile(File file)
+	{
+		return !isLockFile(file) && !isLogFile(file) && !isIndexFile(file) && !isTempFile(file);
+	}
+
+	private boolean useSingleFile()
+	{
+		return config.presetStorage() == PluginPresetsConfig.PresetStorage.SINGLE_FILE;
+	}
+
+	public void createPresetFolder()
+	{
+		final boolean presetFolderWasCreated = presetsDir.mkdirs();
+
+		if (presetFolderWasCreated)
+		{
+			log.info(String.format("Preset folder created at %s", presetsDir.getAbsolutePath()));
+		}
+	}
+
+	/**
+	 * Writes the remaining queued saves and closes the preset folder lock file which is kept open while the plugin is running.
+	 */
+	public void close()
+	{
+		final ScheduledThreadPoolExecutor executor = getWriteExecutor();
+		executor.shutdown();
+		try
+		{
+			if (!executor.awaitTermination(WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+			{
+				log.warn("Timed out waiting for presets to be written");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		writeRemainingSaves();
+		synchronized (this)
+		{
+			writeExecutor = null;
+		}
+
+		folderLock.close();
+		if (parseExecutor != null)
+		{
+			parseExecutor.shutdownNow();
+			parseExecutor = null;
+		}
+	}
+
+	private ExecutorService getParseExecutor()
+	{
+		if (parseExecutor == null)
+		{
+			parseExecutor = Executors.newFixedThreadPool(PARSE_THREADS, runnable -> {
+				Thread parseThread = new Thread(runnable, "PresetFileParser");
+				parseThread.setDaemon(true);
+				return parseThread;
+			});
+		}
+		return parseExecutor;
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getWriteExecutor()
+	{
+		if (writeExecutor == null)
+		{
+			writeExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread writeThread = new Thread(runnable, "PresetWriter");
+				writeThread.setDaemon(true);
+				return writeThread;
+			});
+			// Saves still queued on close are written by close itself
+			writeExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+		return writeExecutor;
 	}
 
-	private FileLock lock() {
-		try {
-			// wait until the lock file is free
-			while (LOCK_FILE.exists()) {
-				// writing the plugin preset files should only take a few ms
-				// if the lock file is more than 5sec old then we assume it's an artifact from a previous run
-				// this can happen in the event runelite crashes or is killed vai external process
-				if(Instant.now().toEpochMilli() - LOCK_FILE.lastModified() > 5000) {
-					LOCK_FILE.delete();
-				} else {
-					TimeUnit.MILLISECONDS.sleep(50);
+	/**
+	 * Deletes the single preset and index files when there are no presets left in the preset folder.
+	 * The lock file is never deleted since other clients may be using it, so the folder itself is
+	 * only deleted when it has no lock file.
+	 */
+	public void deletePresetFolderIfEmpty()
+	{
+		if (presetsDir.exists())
+		{
+			for (File file : Objects.requireNonNull(presetsDir.listFiles()))
+			{
+				if (!isLockFile(file) && !isIndexFile(file) && !(isLogFile(file) && logStore.isEmpty()))
+				{
+					return;
+				}
+			}
+			for (File file : new File[]{logFile, indexFile})
+			{
+				if (file.exists())
+				{
+					deleteFile(file);
 				}
 			}
+			if (lockFile.exists())
+			{
+				return;
+			}
+		}
+
+		deletePresetFolder();
+	}
 
-			FileChannel channel = FileChannel.open(LOCK_FILE.toPath(), CREATE_NEW, SYNC, WRITE);
-			return channel.lock();
-		} catch (IOException | InterruptedException e) {
-			log.warn("Failed to lock file");
+	private void deletePresetFolder()
+	{
+		boolean folderDeleted = presetsDir.delete();
+
+		if (!folderDeleted)
+		{
+			log.warn(String.format("Could not delete %s", presetsDir.getName()));
 		}
-		return null;
 	}
 
-	private void unlock(FileLock lock) {
-		if(lock == null) {
-			log.warn("lock is null"); // probably caused by ending runelite via task manager
-			LOCK_FILE.delete();
+	/**
+	 * Marks all local presets to be written on the next save, e.g. to convert them to another file format.
+	 */
+	public void markAllDirty()
+	{
+		dirtyPresetIds.addAll(presetFiles.keySet());
+		dirtyPresetIds.addAll(logStore.getIds());
+	}
+
+	/**
+	 * Marks preset to be written on the next save.
+	 */
+	public void markDirty(final PluginPreset pluginPreset)
+	{
+		dirtyPresetIds.add(pluginPreset.getId());
+	}
+
+	/**
+	 * Serializes presets marked dirty and queues them to be written with writePendingSaves, so that
+	 * writing can be done on another thread. Called on the thread that modifies presets.
+	 */
+	public void queueSave(final List<PluginPreset> pluginPresets)
+	{
+		final long start = System.nanoTime();
+		final Set<Long> localIds = new HashSet<>();
+		final Map<Long, byte[]> dirtyPresets = new LinkedHashMap<>();
+		for (PluginPreset pluginPreset : pluginPresets)
+		{
+			if (!pluginPreset.getLocal() || dirtyPresetIds.contains(pluginPreset.getId()))
+			{
+				// Load the body before serializing the preset or removing it from storage
+				pluginPreset.getPluginConfigs();
+			}
+
+			if (pluginPreset.isBodyUnavailable())
+			{
+				// Keep the stored preset as it is until its body can be loaded again
+				localIds.add(pluginPreset.getId());
+				metrics.increment("save.unavailableBodies");
+			}
+			else if (!pluginPreset.getLocal())
+			{
+				// Preset is moving to config
+				pluginPreset.setBodyLoader(null);
+				unregisterBody(pluginPreset.getId());
+			}
+			else
+			{
+				localIds.add(pluginPreset.getId());
+				if (dirtyPresetIds.contains(pluginPreset.getId()))
+				{
+					dirtyPresets.put(pluginPreset.getId(), serializePreset(pluginPreset));
+					// Queued before the dirty mark is removed, so the body can not be unloaded in between
+					queuedPresetIds.merge(pluginPreset.getId(), 1, Integer::sum);
+					dirtyPresetIds.remove(pluginPreset.getId());
+				}
+			}
+		}
+
+		pendingSaves.add(new PendingSave(dirtyPresets, localIds));
+		metrics.recordTime("save.serialize", start);
+	}
+
+	/**
+	 * @return amount of queued saves that are not yet written
+	 */
+	public int getPendingSaveCount()
+	{
+		return pendingSaves.size();
+	}
+
+	/**
+	 * Writes queued saves on the preset writer thread, so that waiting for the folder lock and for the disk
+	 * does not hold up the client's shared executor, and then runs the given task on the same thread.
+	 */
+	public void writePendingSavesAsync(final Runnable written)
+	{
+		getWriteExecutor().execute(() ->
+		{
+			writePendingSaves();
+			written.run();
+		});
+	}
+
+	/**
+	 * Writes saves still queued on close, when they can no longer be retried on the writer thread.
+	 * Tries to lock the preset folder until WRITE_TIMEOUT_MS has passed and then writes without the lock,
+	 * since the changes would otherwise be lost.
+	 */
+	private void writeRemainingSaves()
+	{
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MS);
+		writePendingSaves();
+		while (!pendingSaves.isEmpty() && System.nanoTime() < deadline)
+		{
+			try
+			{
+				TimeUnit.MILLISECONDS.sleep(WRITE_RETRY_DELAY_MS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+			writePendingSaves();
+		}
+
+		if (!pendingSaves.isEmpty())
+		{
+			log.warn("Writing {} saves without the preset folder lock", pendingSaves.size());
+			metrics.increment("save.unlockedWrites");
+			writePendingSaves(false);
+		}
+	}
+
+	/**
+	 * Writes queued saves in the order they were queued. Presets that fail to write are marked dirty again.
+	 * Unchanged presets are not touched. If the preset folder can not be locked, nothing is written and
+	 * the saves stay queued to be written again after WRITE_RETRY_DELAY_MS.
+	 */
+	public void writePendingSaves()
+	{
+		writePendingSaves(true);
+	}
+
+	/**
+	 * @param requireLock false to write even if the preset folder can not be locked
+	 */
+	private void writePendingSaves(final boolean requireLock)
+	{
+		synchronized (pendingSaves)
+		{
+			PendingSave pendingSave;
+			while ((pendingSave = pendingSaves.peek()) != null)
+			{
+				final long start = System.nanoTime();
+				try (PresetFolderLock.Held held = folderLock.lockExclusive())
+				{
+					if (!held.isLocked() && requireLock)
+					{
+						log.warn("Could not lock preset folder, {} saves are waiting to be written", pendingSaves.size());
+						metrics.increment("save.retries");
+						scheduleWriteRetry();
+						return;
+					}
+
+					if (useSingleFile())
+					{
+						savePresetsToLogFile(pendingSave.presets, pendingSave.localIds);
+					}
+					else
+					{
+						savePresetsToFiles(pendingSave.presets, pendingSave.localIds);
+					}
+				}
+				pendingSaves.remove();
+				pendingSave.presets.keySet().forEach(id -> queuedPresetIds.computeIfPresent(id, (i, count) -> count > 1 ? count - 1 : null));
+				metrics.recordTime("save.write", start);
+			}
+		}
+	}
+
+	private synchronized void scheduleWriteRetry()
+	{
+		final ScheduledThreadPoolExecutor executor = getWriteExecutor();
+		if (!executor.isShutdown())
+		{
+			executor.schedule(() -> writePendingSaves(), WRITE_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private byte[] serializePreset(final PluginPreset pluginPreset)
+	{
+		return serializer.toJsonWithSummary(pluginPreset).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void savePresetsToFiles(final Map<Long, byte[]> dirtyPresets, final Set<Long> localIds)
+	{
+		dirtyPresets.forEach(this::storePluginPresetToJsonFile);
+
+		// Presets that got deleted or moved to config
+		Iterator<Map.Entry<Long, File>> iterator = presetFiles.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Long, File> entry = iterator.next();
+			if (!localIds.contains(entry.getKey()))
+			{
+				deletePresetFile(entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		// Presets left in the single file from before switching storage
+		List<Long> movedIds = logStore.getIds().stream()
+			.filter(id -> !localIds.contains(id) || presetFiles.containsKey(id))
+			.collect(Collectors.toList());
+		writeLogFile(Collections.emptyMap(), movedIds);
+		if (logFile.exists() && logStore.isEmpty())
+		{
+			deletePresetFile(logFile);
+		}
+	}
+
+	private void savePresetsToLogFile(final Map<Long, byte[]> dirtyPresets, final Set<Long> localIds)
+	{
+		List<Long> removedIds = logStore.getIds().stream()
+			.filter(id -> !localIds.contains(id))
+			.collect(Collectors.toList());
+		if (!writeLogFile(dirtyPresets, removedIds))
+		{
+			// Write the presets again on the next save
+			dirtyPresetIds.addAll(dirtyPresets.keySet());
+			return;
+		}
+
+		// Presets that got deleted, moved to config or left as files from before switching storage
+		Iterator<Map.Entry<Long, File>> iterator = presetFiles.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Long, File> entry = iterator.next();
+			if (!localIds.contains(entry.getKey()) || logStore.contains(entry.getKey()))
+			{
+				deletePresetFile(entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the presets were written to the single preset file
+	 */
+	private boolean writeLogFile(final Map<Long, byte[]> presets, final List<Long> removedIds)
+	{
+		if (presets.isEmpty() && removedIds.isEmpty())
+		{
+			return true;
+		}
+
+		// The single preset file is appended to in place, so its stamp is only known after the write
+		writingFiles.add(logFile.getName());
+		try
+		{
+			logStore.write(presets, removedIds);
+			writtenFiles.put(logFile.getName(), FileStamp.of(logFile.toPath()));
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write presets to %s, %s", logFile.getAbsolutePath(), e.getMessage()));
+			return false;
+		}
+		finally
+		{
+			writingFiles.remove(logFile.getName());
+		}
+	}
+
+	/**
+	 * Loads pluginConfigs of a preset that was loaded without them and unloads the least recently used
+	 * bodies of other presets when more than the configured amount is loaded. Presets with unsaved
+	 * changes are never unloaded. The storage is not locked while the preset is read, so that loading
+	 * does not wait for presets being written.
+	 *
+	 * @return null if the preset is no longer stored as it was when its header was loaded, in which case
+	 * the file it was loaded from is reloaded
+	 */
+	private List<PluginConfig> loadBody(final PluginPreset pluginPreset)
+	{
+		final long start = System.nanoTime();
+		final long id = pluginPreset.getId();
+		final File file = presetFiles.get(id);
+		final File storeFile = logStore.contains(id) && (useSingleFile() || file == null) ? logFile : file;
+		PluginPreset storedPreset = null;
+		try
+		{
+			if (storeFile == logFile)
+			{
+				storedPreset = logStore.read(id);
+			}
+			else if (storeFile != null)
+			{
+				storedPreset = parsePluginPresetFrom(storeFile, false);
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", storeFile.getAbsolutePath(), e.getMessage()));
+		}
+		metrics.recordTime("storage.loadBody", start);
+
+		if (storedPreset == null || storedPreset.getId() != id)
+		{
+			log.warn(String.format("Could not load plugin configurations of preset %s", pluginPreset.getName()));
+			metrics.increment("storage.unavailableBodies");
+			if (storeFile != null)
+			{
+				SwingUtilities.invokeLater(() -> plugin.refreshPresets(Collections.singleton(storeFile.getName())));
+			}
+			return null;
+		}
+
+		registerBody(pluginPreset);
+		return storedPreset.getPluginConfigs();
+	}
+
+	private synchronized void registerBody(final PluginPreset pluginPreset)
+	{
+		loadedBodies.put(pluginPreset.getId(), pluginPreset);
+		unloadBodies();
+	}
+
+	private void unloadBodies()
+	{
+		final int limit = config.loadedPresetLimit();
+		while (loadedBodies.size() > limit)
+		{
+			PluginPreset leastRecentlyUsed = null;
+			for (PluginPreset pluginPreset : loadedBodies.values())
+			{
+				if (!dirtyPresetIds.contains(pluginPreset.getId()) && !queuedPresetIds.containsKey(pluginPreset.getId())
+					&& Boolean.TRUE.equals(pluginPreset.getLocal())
+					&& (leastRecentlyUsed == null || pluginPreset.getLastUsed() < leastRecentlyUsed.getLastUsed()))
+				{
+					leastRecentlyUsed = pluginPreset;
+				}
+			}
+
+			if (leastRecentlyUsed == null)
+			{
+				return;
+			}
+
+			leastRecentlyUsed.unloadBody();
+			loadedBodies.remove(leastRecentlyUsed.getId());
+			metrics.increment("storage.unloadedBodies");
+		}
+	}
+
+	private synchronized void unregisterBody(final long id)
+	{
+		loadedBodies.remove(id);
+	}
+
+	private synchronized void clearLoadedBodies()
+	{
+		loadedBodies.clear();
+	}
+
+	private void deleteFile(File file)
+	{
+		final boolean fileWasDeleted = file.delete();
+		if (!fileWasDeleted)
+		{
+			log.warn(String.format("Could not delete %s", file.getName()));
+		}
+	}
+
+	private void deletePresetFile(File file)
+	{
+		writtenFiles.remove(file.getName());
+		deletedFiles.add(file.getName());
+		deleteFile(file);
+	}
+
+	private void storePluginPresetToJsonFile(final long id, final byte[] presetData)
+	{
+		final File previousFile = presetFiles.get(id);
+		final File presetJsonFile = getPresetJsonFileFrom(id);
+
+		if (!writePresetDataToJsonFile(presetData, presetJsonFile))
+		{
+			// Write the preset again on the next save
+			dirtyPresetIds.add(id);
 			return;
 		}
 
-		try {
-			lock.release();
-			LOCK_FILE.delete();
-		} catch (IOException e) {
-			log.warn("Failed to release lock file");
+		// Preset was loaded from a legacy name based file
+		if (previousFile != null && !previousFile.equals(presetJsonFile))
+		{
+			deletePresetFile(previousFile);
 		}
+		presetFiles.put(id, presetJsonFile);
 	}
 
-	private boolean isLockFile(File file) {
-		try {
-			return LOCK_FILE.exists() && Files.isSameFile(file.toPath(), LOCK_FILE.toPath());
-		} catch (IOException e) {
-			log.warn(String.format("Failed compare file to lock file, %s", e.toString()));
-		}
-		return false;
+	/**
+	 * Preset files are named by preset id so that renaming a preset does not move its file.
+	 * The preset name is stored inside the file.
+	 */
+	private File getPresetJsonFileFrom(final long id)
+	{
+		final String extension = config.compressPresetFiles() ? COMPRESSED_FILE_EXTENSION : PRESET_FILE_EXTENSION;
+		return new File(presetsDir, id + extension);
 	}
 
-	private static File createNewPresetFileWithCustomSuffix(final PluginPreset pluginPreset, final int fileNumber)
+	private static boolean isCompressedFile(final File file)
 	{
-		return new File(PRESETS_DIR, String.format("%s (%d).json", pluginPreset.getName(), fileNumber));
+		return file.getName().endsWith(COMPRESSED_FILE_EXTENSION);
 	}
 
-	public static void createPresetFolder()
+	/**
+	 * Parses preset id from an id named preset file.
+	 *
+	 * @return preset id or null if the file is not named by preset id, e.g. a legacy name based preset file
+	 */
+	static Long getPresetIdFrom(final File file)
 	{
-		final boolean presetFolderWasCreated = PRESETS_DIR.mkdirs();
+		final String fileName = file.getName();
+		final String extension = isCompressedFile(file) ? COMPRESSED_FILE_EXTENSION : PRESET_FILE_EXTENSION;
+		if (!fileName.endsWith(extension))
+		{
+			return null;
+		}
 
-		if (presetFolderWasCreated)
+		try
+		{
+			return Long.parseLong(fileName.substring(0, fileName.length() - extension.length()));
+		}
+		catch (NumberFormatException e)
 		{
-			log.info(String.format("Preset folder created at %s", PRESETS_DIR.getAbsolutePath()));
+			return null;
 		}
 	}
 
-	public void deletePresetFolderIfEmpty()
+	/**
+	 * Writes preset to a temporary file first and then moves it over the preset file,
+	 * so a preset file is never left half written.
+	 *
+	 * @return true if the preset file was written
+	 */
+	private boolean writePresetDataToJsonFile(final byte[] presetData, final File presetJsonFile)
 	{
-		if (PRESETS_DIR.exists() && Objects.requireNonNull(PRESETS_DIR.listFiles()).length > 0)
+		final File tempFile = new File(presetsDir, presetJsonFile.getName() + TEMP_FILE_SUFFIX);
+
+		try (OutputStream outputStream = openOutputStream(tempFile, isCompressedFile(presetJsonFile)))
 		{
-			return;
+			outputStream.write(presetData);
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write preset to %s, %s", tempFile.getAbsolutePath(), e.getMessage()));
+			deleteFile(tempFile);
+			return false;
 		}
 
-		deletePresetFolder();
+		// Recorded before the move since the folder watcher may see the moved file before the move returns.
+		// Moving the file within the folder keeps its size and modification time
+		final String fileName = presetJsonFile.getName();
+		final FileStamp previousStamp = writtenFiles.get(fileName);
+		final FileStamp stamp = FileStamp.of(tempFile.toPath());
+		if (stamp != null)
+		{
+			writtenFiles.put(fileName, stamp);
+		}
+
+		try
+		{
+			moveFile(tempFile, presetJsonFile);
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to replace preset file %s, %s", presetJsonFile.getAbsolutePath(), e.getMessage()));
+			if (previousStamp != null)
+			{
+				writtenFiles.put(fileName, previousStamp);
+			}
+			else
+			{
+				writtenFiles.remove(fileName);
+			}
+			deleteFile(tempFile);
+			return false;
+		}
 	}
 
-	private void deletePresetFolder()
+	private static OutputStream openOutputStream(final File file, final boolean compressed) throws IOException
+	{
+		final OutputStream outputStream = new FileOutputStream(file);
+		return compressed ? new GZIPOutputStream(outputStream) : outputStream;
+	}
+
+	private static InputStream decompressIfNeeded(final File file, final InputStream inputStream) throws IOException
 	{
-		boolean folderDeleted = PRESETS_DIR.delete();
+		return isCompressedFile(file) ? new GZIPInputStream(inputStream) : inputStream;
+	}
 
-		if (!folderDeleted)
+	private static void moveFile(final File source, final File target) throws IOException
+	{
+		try
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
 		{
-			log.warn(String.format("Could not delete %s", PRESETS_DIR.getName()));
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 
-	public void savePresets(final List<PluginPreset> pluginPresets)
+	private static boolean isTempFile(final File file)
 	{
-		synchronized (LOCK_FILE) {
-			FileLock lock = lock();
-			clearPresetFolder();
-			pluginPresets.forEach(this::storePluginPresetToJsonFile);
-			unlock(lock);
+		return file.getName().endsWith(TEMP_FILE_SUFFIX);
+	}
+
+	/**
+	 * Loads all presets from preset folder, both from preset files and the single preset file.
+	 * Presets found only in the storage that is not selected are moved over on the next save.
+	 */
+	public List<PluginPreset> loadPresets() throws IOException
+	{
+		try (PresetFolderLock.Held ignored = folderLock.lockShared())
+		{
+			failedFileNames.clear();
+			presetFiles.clear();
+			dirtyPresetIds.clear();
+			clearLoadedBodies();
+
+			List<PluginPreset> presetsFromFiles = loadPresetFiles();
+			List<PluginPreset> presetsFromLogFile = loadLogFile();
+			return useSingleFile()
+				? mergePresets(presetsFromLogFile, presetsFromFiles)
+				: mergePresets(presetsFromFiles, presetsFromLogFile);
 		}
 	}
 
-	private void clearPresetFolder()
+	private List<PluginPreset> mergePresets(final List<PluginPreset> presets, final List<PluginPreset> otherPresets)
 	{
-		for (File file : Objects.requireNonNull(PRESETS_DIR.listFiles()))
+		Set<Long> loadedIds = presets.stream().map(PluginPreset::getId).collect(Collectors.toSet());
+		List<PluginPreset> merged = new ArrayList<>(presets);
+		for (PluginPreset pluginPreset : otherPresets)
 		{
-			// Don't delete invalid files,
-			// those could be e.g. v1 style presets or some syntax failed presets
-			if (!failedFileNames.contains(file.getName()) && !isLockFile(file))
+			if (loadedIds.add(pluginPreset.getId()))
 			{
-				deleteFile(file);
+				merged.add(pluginPreset);
+				dirtyPresetIds.add(pluginPreset.getId());
 			}
 		}
+		return merged;
 	}
 
-	private void deleteFile(File file)
+	private List<PluginPreset> loadLogFile()
 	{
-		final boolean fileWasDeleted = file.delete();
-		if (!fileWasDeleted)
+		try
 		{
-			log.warn(String.format("Could not delete %s", file.getName()));
+			List<PluginPreset> pluginPresets = logStore.load();
+			pluginPresets.forEach(pluginPreset -> pluginPreset.setLocal(true));
+			return pluginPresets;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load presets from %s, %s", logFile.getAbsolutePath(), e.getMessage()));
+			failedFileNames.add(logFile.getName());
+			return new ArrayList<>();
 		}
 	}
 
-	@SneakyThrows
-	private void storePluginPresetToJsonFile(final PluginPreset pluginPreset)
+	/**
+	 * Loads presets from preset files. Headers of files that have not changed since they were indexed are
+	 * taken from the preset index, other files are parsed concurrently. Presets are merged in file name order,
+	 * so the first file of presets with duplicate ids is always the one loaded.
+	 */
+	private List<PluginPreset> loadPresetFiles() throws IOException
 	{
-		// Only store local presets
-		if (!pluginPreset.getLocal())
+		Set<Long> loadedIds = new HashSet<>();
+		List<PluginPreset> pluginPresetsFromFolder = new ArrayList<>();
+		List<File> files = Arrays.stream(Objects.requireNonNull(presetsDir.listFiles()))
+			.filter(file -> file.isFile() && isPresetFile(file))
+			.sorted(Comparator.comparing(File::getName))
+			.collect(Collectors.toList());
+
+		fileIndex.read();
+		fileIndex.retain(files.stream().map(File::getName).collect(Collectors.toList()));
+
+		List<Future<PresetFileIndex.Entry>> indexedFiles = new ArrayList<>(files.size());
+		for (File file : files)
 		{
-			return;
+			PresetFileIndex.Entry entry = fileIndex.get(file.getName());
+			if (entry != null && entry.matches(file.length(), file.lastModified()))
+			{
+				metrics.increment("index.hits");
+				indexedFiles.add(CompletableFuture.completedFuture(entry));
+			}
+			else
+			{
+				metrics.increment("index.misses");
+				indexedFiles.add(getParseExecutor().submit(() -> indexPresetFile(file, entry)));
+			}
 		}
 
-		File presetJsonFile = getPresetJsonFileFrom(pluginPreset);
-
-		if (presetJsonFile.exists())
+		for (int i = 0; i < files.size(); i++)
 		{
-			presetJsonFile = giveJsonFileCustomSuffixNumber(pluginPreset, presetJsonFile);
+			File file = files.get(i);
+			PresetFileIndex.Entry entry = getIndexedFile(indexedFiles.get(i), file);
+			if (entry != null)
+			{
+				fileIndex.put(entry);
+			}
+
+			if (entry != null && !entry.isFailed())
+			{
+				PluginPreset pluginPreset = PresetFileIndex.copyHeader(entry.getHeader());
+				long id = pluginPreset.getId();
+				if (loadedIds.add(id))
+				{
+					pluginPreset.setLocal(true);
+					pluginPreset.setBodyLoader(this::loadBody);
+					pluginPresetsFromFolder.add(pluginPreset);
+					presetFiles.put(id, file);
+
+					// Migrate legacy name based files to id based files on next save
+					if (!Objects.equals(getPresetIdFrom(file), id))
+					{
+						dirtyPresetIds.add(id);
+					}
+				}
+			}
+			else
+			{
+				failedFileNames.add(file.getName());
+			}
 		}
 
-		writePresetDataToJsonFile(pluginPreset, presetJsonFile);
+		fileIndex.write();
+		return pluginPresetsFromFolder;
 	}
 
-	private File getPresetJsonFileFrom(final PluginPreset pluginPreset)
+	/**
+	 * Reads preset header from a file that is not in the preset index or has changed since it was indexed.
+	 * Called concurrently from parse threads.
+	 *
+	 * @param previous index entry of the file when it was last indexed, or null
+	 */
+	private PresetFileIndex.Entry indexPresetFile(final File file, final PresetFileIndex.Entry previous) throws IOException
 	{
-		return new File(PRESETS_DIR, String.format("%s.json", pluginPreset.getName()));
-	}
+		final long size = file.length();
+		final long lastModified = file.lastModified();
+		final byte[] data = Files.readAllBytes(file.toPath());
+		final CRC32 crc = new CRC32();
+		crc.update(data);
 
-	private File giveJsonFileCustomSuffixNumber(final PluginPreset pluginPreset, File presetJsonFile)
-	{
-		int fileNumber = 1;
-		while (presetJsonFile.exists())
+		// Only the modification time changed
+		if (previous != null && previous.getSize() == data.length && previous.getHash() == crc.getValue())
 		{
-			presetJsonFile = createNewPresetFileWithCustomSuffix(pluginPreset, fileNumber);
-			fileNumber++;
+			return new PresetFileIndex.Entry(file.getName(), size, lastModified, crc.getValue(), previous.getHeader());
 		}
-		return presetJsonFile;
+
+		final PluginPreset pluginPreset = parsePluginPresetFrom(file, new ByteArrayInputStream(data), true);
+		return new PresetFileIndex.Entry(file.getName(), size, lastModified, crc.getValue(),
+			pluginPreset == null ? null : PresetFileIndex.copyHeader(pluginPreset));
 	}
 
-	private void writePresetDataToJsonFile(final PluginPreset pluginPreset, final File presetJsonFile)
+	private PresetFileIndex.Entry getIndexedFile(final Future<PresetFileIndex.Entry> indexedFile, final File file) throws IOException
 	{
-		pluginPreset.setLocal(null); // Don't store status value to file
-
-		try (Writer writer = new FileWriter(presetJsonFile))
+		try
 		{
-			gson.toJson(pluginPreset, writer);
+			return indexedFile.get();
 		}
-		catch (Exception e)
+		catch (InterruptedException e)
 		{
-			// Ignore
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading presets", e);
 		}
-		finally
+		catch (ExecutionException e)
 		{
-			pluginPreset.setLocal(true);
+			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getCause()));
+			return null;
 		}
-
 	}
 
-	public List<PluginPreset> loadPresets() throws IOException
+	/**
+	 * Reloads only the given files from preset folder.
+	 *
+	 * @param fileNames names of the changed files in preset folder
+	 * @return presets that were added or changed and ids of presets that were removed
+	 */
+	public PresetChanges reloadPresets(final Collection<String> fileNames) throws IOException
 	{
-		ArrayList<Long> loadedIds = new ArrayList<>();
-		List<PluginPreset> pluginPresetsFromFolder = new ArrayList<>();
-		synchronized (LOCK_FILE) {
-			FileLock lock = lock();
-
-			failedFileNames.clear();
-			for (File file : Objects.requireNonNull(PRESETS_DIR.listFiles()))
+		final PresetChanges changes = new PresetChanges();
+		try (PresetFolderLock.Held ignored = folderLock.lockShared())
+		{
+			for (String fileName : fileNames)
 			{
-				if (file.isFile() && !isLockFile(file))
+				final File file = new File(presetsDir, fileName);
+				if (isLockFile(file) || isIndexFile(file) || isTempFile(file))
+				{
+					continue;
+				}
+
+				if (isLogFile(file))
+				{
+					reloadLogFile(changes);
+					continue;
+				}
+
+				final Long previousId = getLoadedPresetIdFrom(file);
+				final PluginPreset pluginPreset = file.isFile() ? parsePluginPresetFrom(file, true) : null;
+
+				failedFileNames.remove(fileName);
+				if (pluginPreset == null && file.isFile())
 				{
-					PluginPreset pluginPreset = parsePluginPresetFrom(file);
+					failedFileNames.add(fileName);
+				}
 
-					if (pluginPreset != null)
+				if (previousId != null && (pluginPreset == null || pluginPreset.getId() != previousId))
+				{
+					presetFiles.remove(previousId);
+					// Preset file was moved to the single preset file
+					if (!logStore.contains(previousId))
 					{
-						long id = pluginPreset.getId();
-						if (!(loadedIds.contains(id)))
-						{
-							pluginPreset.setLocal(true);
-							pluginPresetsFromFolder.add(pluginPreset);
-							loadedIds.add(id);
-						}
+						dirtyPresetIds.remove(previousId);
+						changes.removedIds.add(previousId);
 					}
-					else
+				}
+
+				if (pluginPreset != null)
+				{
+					final long id = pluginPreset.getId();
+					final File loadedFile = presetFiles.get(id);
+					// Another file already has a preset with the same id
+					if (loadedFile != null && !loadedFile.equals(file) && loadedFile.isFile())
+					{
+						continue;
+					}
+
+					presetFiles.put(id, file);
+					if (useSingleFile())
 					{
-						failedFileNames.add(file.getName());
+						// Preset file is an old copy of a preset in the single preset file, it is deleted on next save
+						if (logStore.contains(id))
+						{
+							continue;
+						}
+						dirtyPresetIds.add(id);
 					}
+
+					pluginPreset.setLocal(true);
+					changes.removedIds.remove(id);
+					changes.loadedPresets.add(pluginPreset);
 				}
 			}
+		}
+
+		// Replaced and removed presets are no longer used
+		changes.removedIds.forEach(this::unregisterBody);
+		changes.loadedPresets.forEach(pluginPreset -> unregisterBody(pluginPreset.getId()));
+		return changes;
+	}
 
-			unlock(lock);
+	/**
+	 * Reads only the records appended to the single preset file since it was last read.
+	 */
+	private void reloadLogFile(final PresetChanges changes)
+	{
+		final PresetChanges logChanges;
+		try
+		{
+			logChanges = logStore.reload();
+			failedFileNames.remove(logFile.getName());
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load presets from %s, %s", logFile.getAbsolutePath(), e.getMessage()));
+			return;
+		}
+
+		for (long id : logChanges.removedIds)
+		{
+			// Preset was moved to a preset file
+			if (!presetFiles.containsKey(id))
+			{
+				dirtyPresetIds.remove(id);
+				changes.removedIds.add(id);
+			}
+		}
+
+		for (PluginPreset pluginPreset : logChanges.loadedPresets)
+		{
+			final long id = pluginPreset.getId();
+			if (!useSingleFile())
+			{
+				// Preset file takes precedence over the single preset file
+				if (presetFiles.containsKey(id))
+				{
+					continue;
+				}
+				dirtyPresetIds.add(id);
+			}
+
+			pluginPreset.setLocal(true);
+			changes.removedIds.remove(id);
+			changes.loadedPresets.add(pluginPreset);
 		}
-		return pluginPresetsFromFolder;
 	}
 
-	private PluginPreset parsePluginPresetFrom(final File file) throws IOException
+	/**
+	 * Finds id of the preset that was last loaded from or written to the given file.
+	 */
+	private Long getLoadedPresetIdFrom(final File file)
 	{
-		PluginPreset newPreset;
+		final Long id = getPresetIdFrom(file);
+		if (id != null && file.equals(presetFiles.get(id)))
+		{
+			return id;
+		}
 
-		try (Reader reader = new FileReader(file))
+		// Legacy name based file
+		for (Map.Entry<Long, File> entry : presetFiles.entrySet())
 		{
-			newPreset = gson.fromJson(reader, new TypeToken<PluginPreset>()
+			if (entry.getValue().equals(file))
 			{
-			}.getType());
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Parses preset from file. Called concurrently from parse threads.
+	 *
+	 * @param headerOnly skip pluginConfigs, they are loaded when the preset is used
+	 */
+	private PluginPreset parsePluginPresetFrom(final File file, final boolean headerOnly)
+	{
+		try
+		{
+			return parsePluginPresetFrom(file, Files.newInputStream(file.toPath()), headerOnly);
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
+			return null;
+		}
+	}
+
+	private PluginPreset parsePluginPresetFrom(final File file, final InputStream inputStream, final boolean headerOnly)
+	{
+		PluginPreset newPreset;
+
+		try (Reader reader = new BufferedReader(new InputStreamReader(decompressIfNeeded(file, inputStream), StandardCharsets.UTF_8)))
+		{
+			newPreset = headerOnly ? serializer.headerFromJson(reader, this::loadBody) : serializer.fromJson(reader);
 		}
-		catch (JsonSyntaxException | FileNotFoundException e)
+		catch (JsonParseException | IOException e)
 		{
 			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
 			return null;
 		}
 
-		if (isMalformedPluginPreset(newPreset))
+		if (newPreset == null || isMalformedPluginPreset(newPreset))
 		{
 			log.warn(String.format("Plugin Preset data is malformed in file and could not be loaded %s, %s", file.getAbsolutePath(), newPreset));
 			return null;
@@ -301,7 +1158,7 @@ public class PluginPresetsStorage
 
 	private boolean isMalformedPluginPreset(PluginPreset newPreset)
 	{
-		return newPreset.getName() == null || newPreset.getPluginConfigs() == null;
+		return newPreset.getName() == null || !newPreset.hasPluginConfigs();
 	}
 
 	public PluginPreset parsePluginPresetFrom(String string)
@@ -310,9 +1167,7 @@ public class PluginPresetsStorage
 
 		try
 		{
-			newPreset = gson.fromJson(string, new TypeToken<PluginPreset>()
-			{
-			}.getType());
+			newPreset = serializer.fromJson(string);
 		}
 		catch (JsonSyntaxException e)
 		{
@@ -354,7 +1209,7 @@ public class PluginPresetsStorage
 
 	public void watchFolder()
 	{
-		Path presetDir = PRESETS_DIR.toPath();
+		Path presetDir = presetsDir.toPath();
 
 		try
 		{
@@ -373,15 +1228,37 @@ public class PluginPresetsStorage
 
 		while (watcher != null)
 		{
-			WatchKey wk;
 			if (!thread.isAlive())
 			{
 				return;
 			}
 
+			final FolderChanges changes = new FolderChanges();
+			boolean valid;
 			try
 			{
-				wk = watcher.take();
+				valid = collectChanges(watcher.take(), changes);
+
+				// wait until the folder has been quiet for the settle delay, so that a burst of
+				// changes, e.g. a sync tool copying many files, is reloaded only once. A folder that
+				// keeps changing is reloaded after MAX_SETTLE_MS
+				final long settleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_SETTLE_MS);
+				while (valid)
+				{
+					final long remaining = TimeUnit.NANOSECONDS.toMillis(settleDeadline - System.nanoTime());
+					if (remaining <= 0)
+					{
+						metrics.increment("watcher.settleTimeouts");
+						break;
+					}
+
+					final WatchKey wk = watcher.poll(Math.min(config.folderSettleDelay(), remaining), TimeUnit.MILLISECONDS);
+					if (wk == null)
+					{
+						break;
+					}
+					valid = collectChanges(wk, changes);
+				}
 			}
 			catch (InterruptedException e)
 			{
@@ -389,31 +1266,143 @@ public class PluginPresetsStorage
 				return;
 			}
 
-			// test to see if any files other than the lock file were modified
-			boolean change = false;
-			for(WatchEvent<?> event : wk.pollEvents()) {
-				WatchEvent<Path> path = (WatchEvent<Path>) event;
-				change = !path.context().toString().equals(LOCK_FILE.getName());
-				if(change){
-					break;
-				}
-			}
-
 			// if any plugin preset files were modified then run the update
 			// we lock here to ensure that all updates happen before we reload
-			if(change) {
-				synchronized (LOCK_FILE) {
-					FileLock lock = lock();
-					wk.pollEvents(); // clear all events
-					SwingUtilities.invokeLater(plugin::refreshPresets); // Refresh
-					unlock(lock);
+			if (changes.overflow || !changes.fileNames.isEmpty())
+			{
+				try (PresetFolderLock.Held ignored = folderLock.lockShared())
+				{
+					WatchKey wk;
+					while (valid && (wk = watcher.poll()) != null)
+					{
+						valid = collectChanges(wk, changes);
+					}
+
+					metrics.increment("watcher.reloads");
+					metrics.add("watcher.coalescedEvents", changes.events - 1);
+					if (changes.overflow)
+					{
+						// Some events were lost, reload everything
+						SwingUtilities.invokeLater(plugin::refreshPresets);
+					}
+					else
+					{
+						SwingUtilities.invokeLater(() -> plugin.refreshPresets(changes.fileNames));
+					}
 				}
 			}
-			boolean valid = wk.reset();
+
 			if (!valid)
 			{
 				break;
 			}
 		}
 	}
+
+	/**
+	 * Adds changes made by something else than this client to the given changes and resets the key.
+	 *
+	 * @return false if the preset folder can no longer be watched
+	 */
+	private boolean collectChanges(final WatchKey wk, final FolderChanges changes)
+	{
+		for (WatchEvent<?> event : wk.pollEvents())
+		{
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				changes.overflow = true;
+				changes.events++;
+			}
+			else if (isExternalChange(event))
+			{
+				changes.fileNames.add(event.context().toString());
+				changes.events++;
+			}
+		}
+		return wk.reset();
+	}
+
+	private boolean isExternalChange(WatchEvent<?> event)
+	{
+		final String fileName = event.context().toString();
+		if (fileName.equals(LOCK_FILE_NAME) || fileName.equals(INDEX_FILE_NAME) || fileName.endsWith(TEMP_FILE_SUFFIX))
+		{
+			return false;
+		}
+
+		if (writingFiles.contains(fileName))
+		{
+			return false;
+		}
+
+		if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && deletedFiles.remove(fileName))
+		{
+			return false;
+		}
+
+		// File is still as this client wrote it. Replacing a file, e.g. moving a temporary file over it,
+		// is seen as a delete on some platforms, so a delete of a file that still exists is checked the same way.
+		final FileStamp writtenStamp = writtenFiles.get(fileName);
+		return writtenStamp == null || !writtenStamp.equals(FileStamp.of(new File(presetsDir, fileName).toPath()));
+	}
+
+	/**
+	 * Result of reloading changed files from preset folder.
+	 */
+	@Getter
+	public static class PresetChanges
+	{
+		private final List<PluginPreset> loadedPresets = new ArrayList<>();
+		private final Set<Long> removedIds = new HashSet<>();
+	}
+
+	/**
+	 * Changes in preset folder collected by the folder watcher before a reload.
+	 */
+	private static class FolderChanges
+	{
+		private final Set<String> fileNames = new HashSet<>();
+		private boolean overflow;
+		private int events;
+	}
+
+	/**
+	 * Serialized presets of a save.
+	 */
+	@AllArgsConstructor
+	private static class PendingSave
+	{
+		/**
+		 * Presets that changed, by preset id.
+		 */
+		private final Map<Long, byte[]> presets;
+		/**
+		 * Ids of all local presets at the time of the save.
+		 */
+		private final Set<Long> localIds;
+	}
+
+	/**
+	 * Size and modification time of a file.
+	 */
+	@Data
+	@AllArgsConstructor
+	private static class FileStamp
+	{
+		private final long size;
+		private final long lastModified;
+
+		static FileStamp of(Path path)
+		{
+			try
+			{
+				BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+			}
+			catch (IOException e)
+			{
+				return null;
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -36,7 +36,7 @@ import org.apache.commons.text.WordUtils;
 public class PluginPresetsUtils
 {
 	/**
-	 * Checks whether given string is valid for a preset filename.
+	 * Checks whether given string is valid for a preset name.
 	 */
 	public static boolean stringContainsInvalidCharacters(final String string)
 	{
@@ -25,7 +25,9 @@
 package com.pluginpresets;
 
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
  * The setting for a single item in a PluginConfig.
@@ -36,14 +38,18 @@ import lombok.Data;
  * @param customConfigName Optional different config name that Plugin configs
  *                         since with custom settings, they might differ
  * @param configName       Name of the config, where the setting contains
+ * <p>
+ * Settings are shared by configs, so they can not be changed. A changed value is a new setting.
  */
-@Data
+@Getter
+@EqualsAndHashCode
+@ToString
 @AllArgsConstructor
 public class PluginSetting
 {
-	private String name;
-	private String key;
-	private String value;
-	private String customConfigName;
-	private String configName;
+	private final String name;
+	private final String key;
+	private final String value;
+	private final String customConfigName;
+	private final String configName;
 }
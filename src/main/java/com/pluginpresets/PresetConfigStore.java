@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonParseException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+/**
+ * Stores presets that are synced with RuneLite config. Each preset is stored under its own config key
+ * and the ids of stored presets under an index key, so saving a changed preset rewrites only its key.
+ * Preset json is stored deflated and base64 encoded behind a format prefix when that is shorter,
+ * plain json is read as well.
+ */
+@Slf4j
+@Singleton
+public class PresetConfigStore
+{
+	private static final String CONFIG_GROUP = PluginPresetsConfig.GROUP;
+	/**
+	 * All synced presets in a single json list, used before presets were stored by key.
+	 */
+	private static final String CONFIG_KEY_LEGACY_PRESETS = "presets";
+	private static final String CONFIG_KEY_PRESET_IDS = "presetIds";
+	private static final String CONFIG_KEY_PRESET_PREFIX = "preset_";
+	private static final Joiner ID_JOINER = Joiner.on(',');
+	private static final Splitter ID_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+	private static final String DEFLATED_PREFIX = "deflate:";
+
+	private final ConfigManager configManager;
+	private final PluginPresetSerializer serializer;
+	private final PluginPresetsMetrics metrics;
+	/**
+	 * Ids of presets stored in config as of the last load or save.
+	 */
+	private final Set<Long> storedIds = new LinkedHashSet<>();
+	/**
+	 * Hashes of the preset json last loaded from or written to each preset key.
+	 */
+	private final Map<Long, HashCode> storedHashes = new HashMap<>();
+	/**
+	 * Ids of presets that have changed since the last save.
+	 */
+	private final Set<Long> dirtyIds = new HashSet<>();
+	/**
+	 * Ids in the index key whose preset key could not be read. They are kept in the index so a later
+	 * save does not orphan their keys.
+	 */
+	private final Set<String> unreadableIds = new LinkedHashSet<>();
+	/**
+	 * Whether every preset in the legacy key was read, so the key can be unset once they are saved.
+	 */
+	private boolean legacyPresetsLoaded;
+	/**
+	 * Set when the RuneLite profile has changed since presets were loaded, so that synced presets of the
+	 * previous profile are not written to the new one.
+	 */
+	private volatile boolean profileChanged;
+
+	@Inject
+	public PresetConfigStore(ConfigManager configManager, PluginPresetSerializer serializer, PluginPresetsMetrics metrics)
+	{
+		this.configManager = configManager;
+		this.serializer = serializer;
+		this.metrics = metrics;
+	}
+
+	public void markDirty(final PluginPreset preset)
+	{
+		dirtyIds.add(preset.getId());
+	}
+
+	/**
+	 * Called when the RuneLite profile changes. Nothing is saved until presets are loaded from the new profile,
+	 * unsaved changes to synced presets of the previous profile are dropped.
+	 */
+	public void profileChanged()
+	{
+		profileChanged = true;
+	}
+
+	/**
+	 * Loads synced presets from config, including presets stored in the legacy single key.
+	 * Legacy presets are moved to their own keys on the next save, the legacy key is kept if it could not be read.
+	 */
+	public List<PluginPreset> loadPresets()
+	{
+		storedIds.clear();
+		storedHashes.clear();
+		dirtyIds.clear();
+		unreadableIds.clear();
+		legacyPresetsLoaded = false;
+		profileChanged = false;
+
+		final List<PluginPreset> presets = new ArrayList<>();
+		final String ids = getConfiguration(CONFIG_KEY_PRESET_IDS);
+		if (!Strings.isNullOrEmpty(ids))
+		{
+			for (String id : ID_SPLITTER.split(ids))
+			{
+				final String value = getConfiguration(CONFIG_KEY_PRESET_PREFIX + id);
+				if (Strings.isNullOrEmpty(value))
+				{
+					log.warn(String.format("Synced preset %s is missing from config", id));
+					continue;
+				}
+
+				final PluginPreset preset = loadPreset(id, value);
+				if (preset == null)
+				{
+					unreadableIds.add(id);
+				}
+				else if (storedIds.add(preset.getId()))
+				{
+					presets.add(preset);
+				}
+			}
+		}
+
+		final String legacyJson = getConfiguration(CONFIG_KEY_LEGACY_PRESETS);
+		if (!Strings.isNullOrEmpty(legacyJson))
+		{
+			final List<PluginPreset> legacyPresets = parseLegacyPresets(legacyJson);
+			if (legacyPresets != null)
+			{
+				legacyPresetsLoaded = true;
+				for (PluginPreset preset : legacyPresets)
+				{
+					if (preset == null || preset.getName() == null || preset.getPluginConfigs() == null)
+					{
+						log.warn("Synced presets contain a malformed preset, keeping them in config");
+						legacyPresetsLoaded = false;
+					}
+					else if (!storedIds.contains(preset.getId()))
+					{
+						preset.setLocal(false);
+						presets.add(preset);
+						dirtyIds.add(preset.getId());
+					}
+				}
+			}
+		}
+
+		return presets;
+	}
+
+	private PluginPreset loadPreset(final String id, final String value)
+	{
+		try
+		{
+			final String json = decode(value);
+			final PluginPreset preset = serializer.fromJson(json);
+			if (preset == null || preset.getName() == null || preset.getPluginConfigs() == null)
+			{
+				log.warn(String.format("Synced preset %s is malformed", id));
+				return null;
+			}
+			preset.setLocal(false);
+			storedHashes.put(preset.getId(), hash(json));
+			return preset;
+		}
+		catch (JsonParseException | IOException | IllegalArgumentException e)
+		{
+			log.warn(String.format("Failed to load synced preset %s, %s", id, e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * @return the presets in the legacy key or null if it could not be parsed
+	 */
+	private List<PluginPreset> parseLegacyPresets(final String json)
+	{
+		try
+		{
+			final List<PluginPreset> presets = serializer.listFromJson(json);
+			return presets == null ? new ArrayList<>() : presets;
+		}
+		catch (JsonParseException e)
+		{
+			log.warn(String.format("Failed to load synced presets, keeping them in config, %s", e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Writes changed and new synced presets to their keys and unsets keys of presets that are no longer synced.
+	 * A preset is not written if its json hashes the same as what is already stored under its key.
+	 * The index key is only written when the set of synced presets changes, ids of unreadable presets stay in it.
+	 * Nothing is written after the profile has changed until presets are loaded again.
+	 *
+	 * @return true if anything was written to config
+	 */
+	public boolean savePresets(final List<PluginPreset> syncedPresets)
+	{
+		if (profileChanged)
+		{
+			log.debug("Not saving synced presets of the previous profile");
+			dirtyIds.clear();
+			return false;
+		}
+
+		boolean written = false;
+		final Set<Long> ids = new LinkedHashSet<>();
+		for (PluginPreset preset : syncedPresets)
+		{
+			final long id = preset.getId();
+			ids.add(id);
+			if (preset.isBodyUnavailable())
+			{
+				// Keep what is stored until the preset can be loaded again
+				continue;
+			}
+
+			if (dirtyIds.contains(id) || !storedIds.contains(id))
+			{
+				final String json = serializer.toJson(preset);
+				final HashCode hash = hash(json);
+				if (hash.equals(storedHashes.get(id)))
+				{
+					metrics.increment("config.skippedWrites");
+					continue;
+				}
+
+				setConfiguration(CONFIG_KEY_PRESET_PREFIX + id, encode(json));
+				storedHashes.put(id, hash);
+				metrics.increment("config.writes");
+				written = true;
+			}
+		}
+
+		// A preset saved under the id of an unreadable one has replaced it
+		final boolean unreadableReplaced = unreadableIds.removeIf(id -> ids.contains(parseId(id)));
+
+		for (long id : storedIds)
+		{
+			if (!ids.contains(id))
+			{
+				unsetConfiguration(CONFIG_KEY_PRESET_PREFIX + id);
+				storedHashes.remove(id);
+				written = true;
+			}
+		}
+
+		if (!ids.equals(storedIds) || unreadableReplaced)
+		{
+			written = true;
+			if (ids.isEmpty() && unreadableIds.isEmpty())
+			{
+				unsetConfiguration(CONFIG_KEY_PRESET_IDS);
+			}
+			else
+			{
+				setConfiguration(CONFIG_KEY_PRESET_IDS, ID_JOINER.join(Iterables.concat(ids, unreadableIds)));
+			}
+		}
+
+		if (legacyPresetsLoaded)
+		{
+			unsetConfiguration(CONFIG_KEY_LEGACY_PRESETS);
+			legacyPresetsLoaded = false;
+			written = true;
+		}
+
+		storedIds.clear();
+		storedIds.addAll(ids);
+		dirtyIds.clear();
+		return written;
+	}
+
+	/**
+	 * Reads a key of the plugin's config group.
+	 */
+	String getConfiguration(final String key)
+	{
+		return configManager.getConfiguration(CONFIG_GROUP, key);
+	}
+
+	void setConfiguration(final String key, final String value)
+	{
+		configManager.setConfiguration(CONFIG_GROUP, key, value);
+	}
+
+	void unsetConfiguration(final String key)
+	{
+		configManager.unsetConfiguration(CONFIG_GROUP, key);
+	}
+
+	private static Long parseId(final String id)
+	{
+		try
+		{
+			return Long.parseLong(id);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private static HashCode hash(final String json)
+	{
+		return Hashing.murmur3_128().hashString(json, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Deflates and base64 encodes json if the result is shorter than the json.
+	 */
+	static String encode(final String json)
+	{
+		final byte[] data = json.getBytes(StandardCharsets.UTF_8);
+		final ByteArrayOutputStream deflated = new ByteArrayOutputStream(data.length / 4 + 16);
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try (OutputStream out = new DeflaterOutputStream(deflated, deflater))
+		{
+			out.write(data);
+		}
+		catch (IOException e)
+		{
+			return json;
+		}
+		finally
+		{
+			deflater.end();
+		}
+
+		final String encoded = DEFLATED_PREFIX + Base64.getEncoder().encodeToString(deflated.toByteArray());
+		log.debug("Synced preset compressed from {} to {} characters, ratio {}", json.length(), encoded.length(),
+			String.format("%.2f", (double) json.length() / encoded.length()));
+		return encoded.length() < json.length() ? encoded : json;
+	}
+
+	/**
+	 * Decodes a value written by encode, plain json is returned as it is.
+	 */
+	static String decode(final String value) throws IOException
+	{
+		if (!value.startsWith(DEFLATED_PREFIX))
+		{
+			return value;
+		}
+
+		final byte[] deflated = Base64.getDecoder().decode(value.substring(DEFLATED_PREFIX.length()));
+		final ByteArrayOutputStream inflated = new ByteArrayOutputStream(deflated.length * 4);
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(deflated)))
+		{
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				inflated.write(buffer, 0, read);
+			}
+		}
+		return new String(inflated.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
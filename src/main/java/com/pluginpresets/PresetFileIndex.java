@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index of preset files kept in the preset folder between sessions. Holds size, modification time,
+ * content hash and preset header of each preset file, so that files which have not changed since
+ * they were indexed do not have to be opened on startup. Files that failed to load are indexed
+ * without a header.
+ */
+@Slf4j
+class PresetFileIndex
+{
+	private static final int VERSION = 3;
+
+	private final File file;
+	private final PluginPresetSerializer serializer;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private boolean changed;
+
+	PresetFileIndex(File file, PluginPresetSerializer serializer)
+	{
+		this.file = file;
+		this.serializer = serializer;
+	}
+
+	File getFile()
+	{
+		return file;
+	}
+
+	Entry get(String fileName)
+	{
+		return entries.get(fileName);
+	}
+
+	void put(Entry entry)
+	{
+		if (!entry.equals(entries.put(entry.getFileName(), entry)))
+		{
+			changed = true;
+		}
+	}
+
+	/**
+	 * Removes entries of files that are no longer in the preset folder.
+	 */
+	void retain(Collection<String> fileNames)
+	{
+		final Set<String> retained = new HashSet<>(fileNames);
+		if (entries.keySet().removeIf(fileName -> !retained.contains(fileName)))
+		{
+			changed = true;
+		}
+	}
+
+	/**
+	 * Reads the index file. A missing or unreadable index is treated as empty.
+	 */
+	void read()
+	{
+		entries.clear();
+		changed = false;
+		if (!file.exists())
+		{
+			return;
+		}
+
+		try (JsonReader in = new JsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)))
+		{
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "version":
+						if (in.nextInt() != VERSION)
+						{
+							entries.clear();
+							return;
+						}
+						break;
+					case "files":
+						in.beginArray();
+						while (in.hasNext())
+						{
+							final Entry entry = readEntry(in);
+							entries.put(entry.getFileName(), entry);
+						}
+						in.endArray();
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.debug("Ignoring unreadable preset index, {}", e.toString());
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Writes the index file if entries have changed since it was read.
+	 */
+	void write()
+	{
+		if (!changed)
+		{
+			return;
+		}
+
+		Path tempFile = null;
+		try
+		{
+			tempFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+			try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+				JsonWriter out = new JsonWriter(writer))
+			{
+				out.beginObject();
+				out.name("version").value(VERSION);
+				out.name("files").beginArray();
+				for (Entry entry : entries.values())
+				{
+					writeEntry(out, entry);
+				}
+				out.endArray();
+				out.endObject();
+			}
+
+			try
+			{
+				Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			changed = false;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write preset index %s, %s", file.getAbsolutePath(), e.getMessage()));
+			if (tempFile != null && !tempFile.toFile().delete())
+			{
+				log.warn(String.format("Could not delete %s", tempFile));
+			}
+		}
+	}
+
+	/**
+	 * Copies preset without pluginConfigs and status values, so that indexed headers are never shared with loaded presets.
+	 * The summary of the configs is shared, it is not changed.
+	 */
+	static PluginPreset copyHeader(PluginPreset preset)
+	{
+		final PluginPreset header = new PluginPreset(preset.getName());
+		header.setId(preset.getId());
+		header.setKeybind(preset.getKeybind());
+		header.setLocal(null);
+		header.setLoadOnFocus(preset.getLoadOnFocus());
+		header.setAutoUpdated(preset.getAutoUpdated());
+		header.setPluginConfigs(null);
+		header.setSummary(preset.getSummary());
+		return header;
+	}
+
+	private Entry readEntry(JsonReader in) throws IOException
+	{
+		String fileName = null;
+		long size = -1;
+		long lastModified = -1;
+		long hash = 0;
+		PluginPreset header = null;
+		PresetSummary summary = null;
+
+		in.beginObject();
+		while (in.hasNext())
+		{
+			switch (in.nextName())
+			{
+				case "file":
+					fileName = in.nextString();
+					break;
+				case "size":
+					size = in.nextLong();
+					break;
+				case "lastModified":
+					lastModified = in.nextLong();
+					break;
+				case "hash":
+					hash = in.nextLong();
+					break;
+				case "preset":
+					header = serializer.read(in);
+					break;
+				case "summary":
+					summary = PluginPresetSerializer.readSummary(in);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+
+		if (fileName == null || (header != null && header.getName() == null))
+		{
+			throw new IOException("Malformed preset index entry");
+		}
+		if (header != null)
+		{
+			header.setSummary(summary);
+		}
+		return new Entry(fileName, size, lastModified, hash, header);
+	}
+
+	private void writeEntry(JsonWriter out, Entry entry) throws IOException
+	{
+		out.beginObject();
+		out.name("file").value(entry.getFileName());
+		out.name("size").value(entry.getSize());
+		out.name("lastModified").value(entry.getLastModified());
+		out.name("hash").value(entry.getHash());
+		if (entry.getHeader() != null)
+		{
+			out.name("preset");
+			serializer.write(out, entry.getHeader());
+			if (entry.getHeader().getSummary() != null)
+			{
+				out.name("summary");
+				PluginPresetSerializer.writeSummary(out, entry.getHeader().getSummary());
+			}
+		}
+		out.endObject();
+	}
+
+	/**
+	 * Indexed state of a preset file.
+	 */
+	@Getter
+	@AllArgsConstructor
+	static class Entry
+	{
+		private final String fileName;
+		private final long size;
+		private final long lastModified;
+		/**
+		 * CRC32 of the file contents.
+		 */
+		private final long hash;
+		/**
+		 * Preset without pluginConfigs, or null if the file failed to load.
+		 */
+		private final PluginPreset header;
+
+		boolean matches(long size, long lastModified)
+		{
+			return this.size == size && this.lastModified == lastModified;
+		}
+
+		boolean isFailed()
+		{
+			return header == null;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Entry))
+			{
+				return false;
+			}
+			final Entry entry = (Entry) o;
+			return fileName.equals(entry.fileName) && size == entry.size
+				&& lastModified == entry.lastModified && hash == entry.hash;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return fileName.hashCode();
+		}
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lock of the preset folder shared between clients. Readers hold a shared lock and writers an exclusive lock.
+ * The lock file is never deleted, a lock held by a crashed client is released by the operating system.
+ */
+@Slf4j
+class PresetFolderLock
+{
+	private static final long LOCK_TIMEOUT_MS = 2000;
+	private static final long MAX_BACKOFF_MS = 16;
+
+	private final File lockFile;
+	private final PluginPresetsMetrics metrics;
+	// File locks are held by the whole JVM, so threads of this client are ordered with this lock
+	private final ReentrantReadWriteLock processLock = new ReentrantReadWriteLock();
+
+	private FileChannel channel;
+	private FileLock sharedFileLock;
+	private int sharedHolders;
+
+	PresetFolderLock(File lockFile, PluginPresetsMetrics metrics)
+	{
+		this.lockFile = lockFile;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Locks the preset folder for reading. Waits at most LOCK_TIMEOUT_MS, after that returns without the lock.
+	 * Reading may go on without the lock since preset files are replaced atomically.
+	 */
+	Held lockShared()
+	{
+		return lock(true);
+	}
+
+	/**
+	 * Locks the preset folder for writing. Waits at most LOCK_TIMEOUT_MS, after that returns without the lock,
+	 * in which case nothing must be written, see Held.isLocked.
+	 */
+	Held lockExclusive()
+	{
+		return lock(false);
+	}
+
+	private Held lock(boolean shared)
+	{
+		final long start = System.nanoTime();
+		final Lock lock = shared ? processLock.readLock() : processLock.writeLock();
+
+		boolean processLocked = false;
+		try
+		{
+			processLocked = lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		FileLock fileLock = null;
+		boolean locked = false;
+		if (processLocked)
+		{
+			if (shared)
+			{
+				synchronized (this)
+				{
+					if (sharedHolders == 0)
+					{
+						sharedFileLock = acquireFileLock(true, start);
+					}
+					sharedHolders++;
+					locked = sharedFileLock != null;
+				}
+			}
+			else
+			{
+				fileLock = acquireFileLock(false, start);
+				locked = fileLock != null;
+			}
+		}
+		else
+		{
+			metrics.increment("lock.timeouts");
+			log.warn("Timed out waiting for preset folder lock");
+		}
+
+		metrics.recordTime(shared ? "lock.sharedWait" : "lock.exclusiveWait", start);
+		return new Held(lock, shared, processLocked, fileLock, locked);
+	}
+
+	private FileLock acquireFileLock(boolean shared, long start)
+	{
+		final long deadline = start + TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT_MS);
+		long backoff = 1;
+		boolean contended = false;
+
+		try
+		{
+			while (true)
+			{
+				FileLock fileLock = getChannel().tryLock(0, Long.MAX_VALUE, shared);
+				if (fileLock != null)
+				{
+					return fileLock;
+				}
+
+				if (!contended)
+				{
+					contended = true;
+					metrics.increment("lock.contended");
+				}
+
+				if (System.nanoTime() > deadline)
+				{
+					metrics.increment("lock.timeouts");
+					log.warn("Timed out waiting for preset folder lock held by another client");
+					return null;
+				}
+
+				TimeUnit.MILLISECONDS.sleep(backoff);
+				backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+			}
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			log.warn("Failed to lock preset folder, {}", e.toString());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	private synchronized FileChannel getChannel() throws IOException
+	{
+		if (channel == null || !channel.isOpen())
+		{
+			channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return channel;
+	}
+
+	private void release(FileLock fileLock)
+	{
+		if (fileLock == null || !fileLock.isValid())
+		{
+			return;
+		}
+
+		try
+		{
+			fileLock.release();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to release preset folder lock, {}", e.toString());
+		}
+	}
+
+	/**
+	 * Closes the lock file. Any file locks still held are released.
+	 */
+	synchronized void close()
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to close preset folder lock, {}", e.toString());
+			}
+			channel = null;
+		}
+		sharedFileLock = null;
+		sharedHolders = 0;
+	}
+
+	class Held implements AutoCloseable
+	{
+		private final Lock lock;
+		private final boolean shared;
+		private final boolean processLocked;
+		private final FileLock fileLock;
+		private final boolean locked;
+
+		private Held(Lock lock, boolean shared, boolean processLocked, FileLock fileLock, boolean locked)
+		{
+			this.lock = lock;
+			this.shared = shared;
+			this.processLocked = processLocked;
+			this.fileLock = fileLock;
+			this.locked = locked;
+		}
+
+		/**
+		 * @return false if waiting for the lock timed out or the lock file could not be locked
+		 */
+		boolean isLocked()
+		{
+			return locked;
+		}
+
+		@Override
+		public void close()
+		{
+			if (!processLocked)
+			{
+				return;
+			}
+
+			if (shared)
+			{
+				synchronized (PresetFolderLock.this)
+				{
+					// Lock file may have been closed while the lock was held
+					sharedHolders = Math.max(0, sharedHolders - 1);
+					if (sharedHolders == 0)
+					{
+						release(sharedFileLock);
+						sharedFileLock = null;
+					}
+				}
+			}
+			else
+			{
+				release(fileLock);
+			}
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,579 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores all local presets in a single append-only file with an in-memory index of preset id to record offset.
+ * Saving a preset appends a record and deleting a preset appends a tombstone, so both only write the changed preset.
+ * Presets are read without their plugin configs, which are read from the record by id when needed.
+ * Records are checksummed, a partially written record at the end of the file, e.g. after a crash, is ignored
+ * and overwritten by the next append. Superseded records are removed by compaction, which rewrites the file
+ * with a new generation number so other clients know to rebuild their index.
+ * The file is read with positional reads rather than mapped, since a mapped file can not be replaced or
+ * deleted on Windows until the mapping is garbage collected.
+ *
+ * Presets are written on the save thread and read on the client threads, so access to the index is synchronized.
+ * A single record is read without holding the lock, its checksum tells whether it was read whole.
+ */
+@Slf4j
+class PresetLogStore
+{
+	private static final int FILE_MAGIC = 0x50504c47;
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_SIZE = 16;
+	private static final int RECORD_MAGIC = 0x50505243;
+	private static final int RECORD_HEADER_SIZE = 21;
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_DELETE = 2;
+	private static final long COMPACTION_MIN_DEAD_BYTES = 256 * 1024;
+
+	private final File file;
+	private final PluginPresetSerializer serializer;
+	private final Function<PluginPreset, List<PluginConfig>> bodyLoader;
+	private final Map<Long, Record> index = new HashMap<>();
+
+	private long generation = -1;
+	private long end = FILE_HEADER_SIZE;
+	private long deadBytes;
+
+	PresetLogStore(File file, PluginPresetSerializer serializer, Function<PluginPreset, List<PluginConfig>> bodyLoader)
+	{
+		this.file = file;
+		this.serializer = serializer;
+		this.bodyLoader = bodyLoader;
+	}
+
+	File getFile()
+	{
+		return file;
+	}
+
+	synchronized boolean contains(long id)
+	{
+		return index.containsKey(id);
+	}
+
+	synchronized Set<Long> getIds()
+	{
+		return new HashSet<>(index.keySet());
+	}
+
+	/**
+	 * Reads headers of all presets from the file.
+	 */
+	synchronized List<PluginPreset> load() throws IOException
+	{
+		if (!file.exists())
+		{
+			reset();
+			return new ArrayList<>();
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			// Read the whole file again to get the payloads of all records
+			reset();
+			final Map<Long, byte[]> payloads = new HashMap<>();
+			sync(channel, null, payloads);
+			final List<PluginPreset> presets = new ArrayList<>(index.size());
+			for (byte[] payload : payloads.values())
+			{
+				final PluginPreset preset = readPreset(payload, true);
+				if (preset != null)
+				{
+					presets.add(preset);
+				}
+			}
+			return presets;
+		}
+	}
+
+	/**
+	 * Catches up with records appended by other clients.
+	 *
+	 * @return presets that were added or changed and ids of presets that were removed
+	 */
+	synchronized PluginPresetsStorage.PresetChanges reload() throws IOException
+	{
+		final PluginPresetsStorage.PresetChanges changes = new PluginPresetsStorage.PresetChanges();
+		if (!file.exists())
+		{
+			changes.getRemovedIds().addAll(index.keySet());
+			reset();
+			return changes;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			final Set<Long> changedIds = new HashSet<>();
+			final Map<Long, byte[]> payloads = new HashMap<>();
+			sync(channel, changedIds, payloads);
+			for (long id : changedIds)
+			{
+				final byte[] payload = payloads.get(id);
+				final PluginPreset preset = payload == null ? null : readPreset(payload, true);
+				if (preset != null)
+				{
+					changes.getLoadedPresets().add(preset);
+				}
+				else
+				{
+					changes.getRemovedIds().add(id);
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Reads the whole preset with the given id by reading only its record. The record is read without
+	 * holding the lock, so that reading does not wait for a write. A record moved by a compaction of this
+	 * client in the meantime is read again from its new place.
+	 *
+	 * @return the preset or null if it is not in the file or the file was compacted by another client
+	 */
+	PluginPreset read(long id) throws IOException
+	{
+		Record record;
+		long recordGeneration;
+		synchronized (this)
+		{
+			record = index.get(id);
+			recordGeneration = generation;
+		}
+
+		while (record != null)
+		{
+			final byte[] payload = readRecord(id, record, recordGeneration);
+			if (payload != null)
+			{
+				return readPreset(payload, false);
+			}
+
+			synchronized (this)
+			{
+				if (generation == recordGeneration)
+				{
+					return null;
+				}
+				record = index.get(id);
+				recordGeneration = generation;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return payload of the record or null if the file no longer has the record of the given generation
+	 */
+	private byte[] readRecord(long id, Record record, long recordGeneration) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			if (channel.read(header, 0) < FILE_HEADER_SIZE || header.getLong(8) != recordGeneration
+				|| channel.size() < record.offset + record.length)
+			{
+				return null;
+			}
+
+			final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+			if (!readFully(channel, buffer, record.offset - RECORD_HEADER_SIZE))
+			{
+				return null;
+			}
+
+			final CRC32 crc = new CRC32();
+			crc.update(buffer.array(), RECORD_HEADER_SIZE, record.length);
+			if (buffer.getInt(0) != RECORD_MAGIC || buffer.getLong(5) != id || buffer.getInt(17) != (int) crc.getValue())
+			{
+				return null;
+			}
+			return Arrays.copyOfRange(buffer.array(), RECORD_HEADER_SIZE, buffer.capacity());
+		}
+	}
+
+	/**
+	 * Appends the given presets and tombstones for the removed ids, compacting the file if needed.
+	 */
+	synchronized void write(Map<Long, byte[]> presets, Collection<Long> removedIds) throws IOException
+	{
+		if (presets.isEmpty() && removedIds.isEmpty())
+		{
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			if (channel.size() < FILE_HEADER_SIZE)
+			{
+				writeFileHeader(channel, System.currentTimeMillis());
+			}
+			sync(channel, null, null);
+
+			int size = 0;
+			for (byte[] payload : presets.values())
+			{
+				size += RECORD_HEADER_SIZE + payload.length;
+			}
+			for (long id : removedIds)
+			{
+				if (index.containsKey(id))
+				{
+					size += RECORD_HEADER_SIZE;
+				}
+			}
+
+			final ByteBuffer buffer = ByteBuffer.allocate(size);
+			final Map<Long, Record> written = new HashMap<>();
+			for (Map.Entry<Long, byte[]> preset : presets.entrySet())
+			{
+				final byte[] payload = preset.getValue();
+				written.put(preset.getKey(), new Record(end + buffer.position() + RECORD_HEADER_SIZE, payload.length));
+				putRecord(buffer, RECORD_PUT, preset.getKey(), payload);
+			}
+			for (long id : removedIds)
+			{
+				if (index.containsKey(id))
+				{
+					written.put(id, null);
+					putRecord(buffer, RECORD_DELETE, id, new byte[0]);
+				}
+			}
+
+			buffer.flip();
+			writeFully(channel, buffer, end);
+			channel.force(false);
+
+			written.forEach((id, record) -> {
+				final Record previous = record == null ? index.remove(id) : index.put(id, record);
+				if (previous != null)
+				{
+					deadBytes += RECORD_HEADER_SIZE + previous.length;
+				}
+				if (record == null)
+				{
+					deadBytes += RECORD_HEADER_SIZE;
+				}
+			});
+			end += size;
+		}
+
+		if (deadBytes > COMPACTION_MIN_DEAD_BYTES && deadBytes > end / 2)
+		{
+			compact();
+		}
+	}
+
+	/**
+	 * @return true if the file was fully read and holds no presets
+	 */
+	synchronized boolean isEmpty()
+	{
+		return index.isEmpty() && file.length() <= end;
+	}
+
+	/**
+	 * Rewrites the file with only the latest record of each preset.
+	 */
+	private void compact() throws IOException
+	{
+		final long start = System.nanoTime();
+		final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		final Map<Long, Record> compacted = new HashMap<>();
+		final long newGeneration = generation + 1;
+
+		try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			FileChannel target = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			writeFileHeader(target, newGeneration);
+			// The header is written at its position, records are transferred to the channel's position
+			target.position(FILE_HEADER_SIZE);
+			long position = FILE_HEADER_SIZE;
+			for (Map.Entry<Long, Record> entry : index.entrySet())
+			{
+				final Record record = entry.getValue();
+				final long size = RECORD_HEADER_SIZE + record.length;
+				final long recordStart = record.offset - RECORD_HEADER_SIZE;
+				long transferred = 0;
+				while (transferred < size)
+				{
+					transferred += source.transferTo(recordStart + transferred, size - transferred, target);
+				}
+				compacted.put(entry.getKey(), new Record(position + RECORD_HEADER_SIZE, record.length));
+				position += size;
+			}
+			target.force(false);
+
+			try
+			{
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			index.clear();
+			index.putAll(compacted);
+			generation = newGeneration;
+			end = position;
+			deadBytes = 0;
+			log.debug("Compacted {} in {} ms", file.getName(), (System.nanoTime() - start) / 1_000_000);
+		}
+		catch (IOException e)
+		{
+			// e.g. another client has the file open on Windows, compaction is retried on a later write
+			log.debug("Could not compact {}, {}", file.getName(), e.toString());
+			if (tempFile.exists() && !tempFile.delete())
+			{
+				log.warn(String.format("Could not delete %s", tempFile.getName()));
+			}
+		}
+	}
+
+	/**
+	 * Brings the index up to date with the file. Rebuilds the index if the file was compacted or replaced.
+	 *
+	 * @param changedIds collects ids of presets whose records changed, may be null
+	 * @param payloads   collects payloads of the records read by preset id, may be null
+	 */
+	private void sync(FileChannel channel, Set<Long> changedIds, Map<Long, byte[]> payloads) throws IOException
+	{
+		final long size = channel.size();
+		final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		if (size < FILE_HEADER_SIZE || !readFully(channel, header, 0))
+		{
+			if (changedIds != null)
+			{
+				changedIds.addAll(index.keySet());
+			}
+			reset();
+			return;
+		}
+
+		if (header.getInt(0) != FILE_MAGIC || header.getInt(4) != FILE_VERSION)
+		{
+			throw new IOException("Unknown preset file format in " + file.getName());
+		}
+
+		final long fileGeneration = header.getLong(8);
+		if (fileGeneration != generation || size < end)
+		{
+			if (changedIds != null)
+			{
+				changedIds.addAll(index.keySet());
+			}
+			reset();
+			generation = fileGeneration;
+		}
+
+		scan(channel, size, changedIds, payloads);
+	}
+
+	private void scan(FileChannel channel, long size, Set<Long> changedIds, Map<Long, byte[]> payloads) throws IOException
+	{
+		final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		final CRC32 crc = new CRC32();
+		while (end + RECORD_HEADER_SIZE <= size)
+		{
+			header.clear();
+			if (!readFully(channel, header, end) || header.getInt(0) != RECORD_MAGIC)
+			{
+				break;
+			}
+
+			final byte type = header.get(4);
+			final long id = header.getLong(5);
+			final int length = header.getInt(13);
+			final int checksum = header.getInt(17);
+			if (length < 0 || end + RECORD_HEADER_SIZE + length > size)
+			{
+				break;
+			}
+
+			final ByteBuffer payload = ByteBuffer.allocate(length);
+			if (!readFully(channel, payload, end + RECORD_HEADER_SIZE))
+			{
+				break;
+			}
+			crc.reset();
+			crc.update(payload.array(), 0, length);
+			if ((int) crc.getValue() != checksum)
+			{
+				break;
+			}
+
+			final Record previous = type == RECORD_PUT
+				? index.put(id, new Record(end + RECORD_HEADER_SIZE, length))
+				: index.remove(id);
+			if (previous != null)
+			{
+				deadBytes += RECORD_HEADER_SIZE + previous.length;
+			}
+			if (type != RECORD_PUT)
+			{
+				deadBytes += RECORD_HEADER_SIZE;
+			}
+			if (changedIds != null)
+			{
+				changedIds.add(id);
+			}
+			if (payloads != null)
+			{
+				if (type == RECORD_PUT)
+				{
+					payloads.put(id, payload.array());
+				}
+				else
+				{
+					payloads.remove(id);
+				}
+			}
+
+			end += RECORD_HEADER_SIZE + length;
+		}
+
+		if (end < size)
+		{
+			log.debug("Ignoring {} bytes of incomplete records at the end of {}", size - end, file.getName());
+		}
+	}
+
+	private PluginPreset readPreset(byte[] payload, boolean headerOnly)
+	{
+		try
+		{
+			final String json = new String(payload, StandardCharsets.UTF_8);
+			final PluginPreset preset = headerOnly
+				? serializer.headerFromJson(new StringReader(json), bodyLoader)
+				: serializer.fromJson(json);
+			if (preset == null || preset.getName() == null || !preset.hasPluginConfigs())
+			{
+				log.warn(String.format("Plugin Preset data is malformed in %s", file.getName()));
+				return null;
+			}
+			return preset;
+		}
+		catch (JsonParseException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", file.getName(), e.getMessage()));
+			return null;
+		}
+	}
+
+	private static void putRecord(ByteBuffer buffer, byte type, long id, byte[] payload)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+		buffer.putInt(RECORD_MAGIC);
+		buffer.put(type);
+		buffer.putLong(id);
+		buffer.putInt(payload.length);
+		buffer.putInt((int) crc.getValue());
+		buffer.put(payload);
+	}
+
+	private void writeFileHeader(FileChannel channel, long fileGeneration) throws IOException
+	{
+		final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.putInt(FILE_MAGIC);
+		header.putInt(FILE_VERSION);
+		header.putLong(fileGeneration);
+		header.flip();
+		writeFully(channel, header, 0);
+		channel.force(false);
+	}
+
+	/**
+	 * Fills the buffer from the given position and flips it for reading.
+	 *
+	 * @return false if the file ended before the buffer was filled
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			final int read = channel.read(buffer, position);
+			if (read < 0)
+			{
+				return false;
+			}
+			position += read;
+		}
+		buffer.flip();
+		return true;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private void reset()
+	{
+		index.clear();
+		generation = -1;
+		end = FILE_HEADER_SIZE;
+		deadBytes = 0;
+	}
+
+	@AllArgsConstructor
+	private static class Record
+	{
+		/**
+		 * Offset of the record payload.
+		 */
+		private final long offset;
+		private final int length;
+	}
+}
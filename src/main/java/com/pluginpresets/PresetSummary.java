@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2026, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * What is needed of a preset's plugin configs while they are not loaded: on/off statuses and a hash of the
+ * settings of each config to match the preset against current configurations, and the custom settings.
+ * Written with stored presets and kept in the preset index, so that loading preset headers does not parse
+ * the configs and matching presets and indexing custom settings does not load preset bodies.
+ */
+@Getter
+@AllArgsConstructor
+class PresetSummary
+{
+	/**
+	 * Summaries of the plugin configs by plugin name.
+	 */
+	private final Map<String, ConfigSummary> configs;
+
+	/**
+	 * Plugin configs that contain custom settings, with only their custom settings.
+	 */
+	private final List<PluginConfig> customSettingConfigs;
+
+	static PresetSummary of(Collection<PluginConfig> pluginConfigs)
+	{
+		final Map<String, ConfigSummary> configs = new LinkedHashMap<>();
+		final List<PluginConfig> customSettingConfigs = new ArrayList<>();
+		for (PluginConfig config : pluginConfigs)
+		{
+			configs.put(config.getName(), config.getSummary());
+			if (config.getSettings() != null && config.containsCustomSettings())
+			{
+				customSettingConfigs.add(config.withSettingsMatching(setting -> setting.getCustomConfigName() != null));
+			}
+		}
+		return new PresetSummary(configs, customSettingConfigs);
+	}
+
+	boolean isEmpty()
+	{
+		return configs.isEmpty();
+	}
+
+	boolean canBeDisabled()
+	{
+		for (ConfigSummary config : configs.values())
+		{
+			if (config.getEnabled() != null && config.getEnabled())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Same as matching the summarized configs against current configurations, see PluginPreset.match.
+	 * A config can only be matched by its hash when it has a value for the same settings as the current config.
+	 *
+	 * @return null if the result depends on a config that can not be matched by its hash
+	 */
+	Boolean match(CurrentConfigurations currentConfigurations)
+	{
+		boolean unknown = false;
+		for (Map.Entry<String, ConfigSummary> entry : configs.entrySet())
+		{
+			PluginConfig currentConfig = currentConfigurations.getConfig(entry.getKey());
+			if (currentConfig == null)
+			{
+				continue;
+			}
+
+			ConfigSummary config = entry.getValue();
+			if (config.getEnabled() != null && !config.getEnabled().equals(currentConfig.getEnabled()))
+			{
+				return false;
+			}
+
+			ConfigSummary current = currentConfig.getSummary();
+			if (config.getKeysHash() != current.getKeysHash())
+			{
+				unknown = true;
+			}
+			else if (config.getValuesHash() != current.getValuesHash())
+			{
+				return false;
+			}
+		}
+		return unknown ? null : true;
+	}
+
+	/**
+	 * On/off status and settings hash of a single plugin config.
+	 */
+	@Getter
+	@AllArgsConstructor
+	static class ConfigSummary
+	{
+		private final Boolean enabled;
+		/**
+		 * Order independent hash of the keys of settings that have a value.
+		 */
+		private final long keysHash;
+		/**
+		 * Order independent hash of the keys and values of settings that have a value.
+		 */
+		private final long valuesHash;
+
+		static ConfigSummary of(PluginConfig config)
+		{
+			long keysHash = 0;
+			long valuesHash = 0;
+			if (config.getSettings() != null)
+			{
+				for (PluginSetting setting : config.getSettings())
+				{
+					// Settings without a value never differ from the current value
+					if (setting.getValue() != null)
+					{
+						keysHash += Hashing.murmur3_128().hashString(setting.getKey(), StandardCharsets.UTF_8).asLong();
+						valuesHash += Hashing.murmur3_128().newHasher()
+							.putString(setting.getKey(), StandardCharsets.UTF_8)
+							.putByte((byte) 0)
+							.putString(setting.getValue(), StandardCharsets.UTF_8)
+							.hash().asLong();
+					}
+				}
+			}
+			return new ConfigSummary(config.getEnabled(), keysHash, valuesHash);
+		}
+	}
+}
@@ -368,7 +368,6 @@ public class ConfigPanel extends JPanel
 
 		ArrayList<String> loopedInvalidConfigurations = new ArrayList<>();
 		String configName = currentConfig.getConfigName();
-		List<String> keys = currentConfig.getSettingKeys();
 
 		currentConfig.getSettings().forEach(currentSetting ->
 		{
@@ -387,7 +386,7 @@ public class ConfigPanel extends JPanel
 			{
 				presetSettings.forEach(setting ->
 				{
-					boolean invalidSetting = !keys.contains(setting.getKey()) && setting.getCustomConfigName() == null;
+					boolean invalidSetting = !currentConfig.hasSetting(setting.getKey()) && setting.getCustomConfigName() == null;
 					if (invalidSetting)
 					{
 						settings.add(new ConfigRow(null, null, setting, plugin), constraints);
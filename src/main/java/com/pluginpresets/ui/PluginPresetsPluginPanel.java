@@ -42,6 +42,7 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.swing.Box;
 import javax.swing.Icon;
@@ -267,10 +268,19 @@ public class PluginPresetsPluginPanel extends PluginPanel
 			@Override
 			public void mousePressed(MouseEvent mouseEvent)
 			{
-				plugin.getPresetEditor().updateAllModified();
-				if (plugin.getAutoUpdater() == null && editedPreset.getAutoUpdated() != null)
+				PluginPresetsPresetEditor presetEditor = plugin.getPresetEditor();
+				presetEditor.begin();
+				try
 				{
-					plugin.setAutoUpdatedPreset(plugin.getPresetEditor().getEditedPreset().getId());
+					presetEditor.updateAllModified();
+					if (plugin.getAutoUpdater() == null && editedPreset.getAutoUpdated() != null)
+					{
+						plugin.setAutoUpdatedPreset(presetEditor.getEditedPreset().getId());
+					}
+				}
+				finally
+				{
+					presetEditor.commit();
 				}
 			}
 
@@ -481,7 +491,7 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		List<PluginPreset> presets = plugin.getPluginPresets();
 		for (PluginPreset p : presets)
 		{
-			if (p.getLoadOnFocus() != null && !p.getPluginConfigs().isEmpty())
+			if (p.getLoadOnFocus() != null && !p.isEmpty())
 			{
 				return true;
 			}
@@ -533,7 +543,8 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		searchBar.requestFocusInWindow();
 
 		CurrentConfigurations currentConfigurations = plugin.getCurrentConfigurations();
-		List<PluginConfig> configurations = currentConfigurations.getPluginConfigs();
+		// Current configurations are shared, so the view is built from a copy of the list
+		List<PluginConfig> configurations = new ArrayList<>(currentConfigurations.getPluginConfigs());
 
 		// Only show custom configs that are saved to edited preset
 		filterCustomConfigs(configurations);
@@ -582,9 +593,19 @@ public class PluginPresetsPluginPanel extends PluginPanel
 
 	private void filterCustomConfigs(List<PluginConfig> configurations)
 	{
-		List<CustomSetting> editedPresetCustomSettings = plugin.getCustomSettingsManager().getCustomSettingsFor(editedPreset.getId());
-		List<String> customSettingKeys = editedPresetCustomSettings.stream().map(customSetting -> customSetting.getSetting().getKey()).collect(Collectors.toList());
-		configurations.forEach(c -> c.getSettings().removeIf(setting -> setting.getCustomConfigName() != null && !customSettingKeys.contains(setting.getKey())));
+		List<CustomSetting> editedPresetCustomSettings = plugin.getCustomSettingsManager().getCustomSettingsFor(editedPreset);
+		Set<String> customSettingKeys = editedPresetCustomSettings.stream().map(customSetting -> customSetting.getSetting().getKey()).collect(Collectors.toSet());
+		configurations.replaceAll(c ->
+		{
+			boolean otherCustomSettings = c.getSettings().stream()
+				.anyMatch(setting -> setting.getCustomConfigName() != null && !customSettingKeys.contains(setting.getKey()));
+			if (!otherCustomSettings)
+			{
+				return c;
+			}
+
+			return c.withSettingsMatching(setting -> setting.getCustomConfigName() == null || customSettingKeys.contains(setting.getKey()));
+		});
 	}
 
 	private void addMissingConfigurations(List<PluginConfig> configurations)
@@ -635,8 +635,6 @@ class PresetPanel extends JPanel
 		nameInput.setEditable(false);
 		updateNameActions(false);
 		requestFocusInWindow();
-
-		plugin.savePresets();
 	}
 
 	private void updatePresetName()
@@ -648,7 +646,7 @@ class PresetPanel extends JPanel
 		boolean validName = !empty && !stringContainsInvalidCharacters;
 		if (validName)
 		{
-			preset.setName(nameInputText);
+			plugin.renamePreset(preset, nameInputText);
 		}
 		else
 		{
@@ -667,7 +665,7 @@ class PresetPanel extends JPanel
 	private void setDefaultPresetName()
 	{
 		String defaultPresetName = PluginPresetsPlugin.DEFAULT_PRESET_NAME;
-		preset.setName(defaultPresetName);
+		plugin.renamePreset(preset, defaultPresetName);
 		nameInput.setText(defaultPresetName);
 	}
 
@@ -781,8 +779,7 @@ class PresetPanel extends JPanel
 			? null
 			: new Keybind(savedKeybind);
 
-		preset.setKeybind(presetKeybind);
-		plugin.savePresets();
+		plugin.setPresetKeybind(preset, presetKeybind);
 	}
 
 	private void cancelKeybind()
@@ -888,8 +885,7 @@ class PresetPanel extends JPanel
 		}
 		else
 		{
-			preset.setAutoUpdated(true);
-			plugin.savePresets();
+			plugin.addAutoUpdateFrom(preset);
 		}
 	}
 
@@ -905,8 +901,7 @@ class PresetPanel extends JPanel
 
 	private void setPresetWindowFocus(Boolean loadOnFocus)
 	{
-		preset.setLoadOnFocus(loadOnFocus);
-		plugin.savePresets();
+		plugin.setPresetLoadOnFocus(preset, loadOnFocus);
 	}
 
 	public void editPreset(PluginPreset preset)
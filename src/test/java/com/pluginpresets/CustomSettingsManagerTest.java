@@ -0,0 +1,111 @@
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CustomSettingsManagerTest
+{
+	private final CustomSettingsManager manager = new CustomSettingsManager();
+
+	@Test
+	public void unchangedPresetsAreNotReindexed()
+	{
+		PluginPreset first = createPreset(1, false, "first");
+		PluginPreset second = createPreset(2, false, "second");
+		List<PluginPreset> presets = Arrays.asList(first, second);
+		manager.parseCustomSettings(presets);
+		CustomSetting firstSetting = manager.getCustomSettingsFor(first).get(0);
+		CustomSetting secondSetting = manager.getCustomSettingsFor(second).get(0);
+
+		second.putConfig(createConfig("changed"));
+		manager.updateCustomSettings(presets);
+
+		assertSame(firstSetting, manager.getCustomSettingsFor(first).get(0));
+		assertNotSame(secondSetting, manager.getCustomSettingsFor(second).get(0));
+		assertEquals("changed", manager.getCustomSettingsFor(second).get(0).getSetting().getValue());
+	}
+
+	@Test
+	public void replacedPresetIsReindexed()
+	{
+		PluginPreset preset = createPreset(1, false, "before");
+		manager.parseCustomSettings(Collections.singletonList(preset));
+
+		PluginPreset reloaded = createPreset(1, false, "after");
+		manager.updateCustomSettings(Collections.singletonList(reloaded));
+
+		List<CustomSetting> settings = manager.getCustomConfigsFor("plugin");
+		assertEquals(1, settings.size());
+		assertSame(reloaded, settings.get(0).getParentPreset());
+	}
+
+	@Test
+	public void removedPresetIsUnindexed()
+	{
+		PluginPreset first = createPreset(1, false, "value");
+		PluginPreset second = createPreset(2, false, "value");
+		manager.parseCustomSettings(Arrays.asList(first, second));
+		assertEquals(1, manager.getCustomConfigsFor("plugin").size());
+
+		manager.updateCustomSettings(Collections.singletonList(second));
+		assertTrue(manager.getCustomSettingsFor(first).isEmpty());
+		assertSame(second, manager.getCustomConfigsFor("plugin").get(0).getParentPreset());
+
+		manager.updateCustomSettings(Collections.emptyList());
+		assertTrue(manager.getCustomConfigsFor("plugin").isEmpty());
+	}
+
+	@Test
+	public void localAndSyncedPresetsWithSameIdAreIndexedSeparately()
+	{
+		PluginPreset synced = createPreset(1, false, "synced");
+		PluginPreset local = createPreset(1, true, "local");
+		manager.parseCustomSettings(Arrays.asList(synced, local));
+
+		assertEquals("synced", manager.getCustomSettingsFor(synced).get(0).getSetting().getValue());
+		assertEquals("local", manager.getCustomSettingsFor(local).get(0).getSetting().getValue());
+
+		manager.removeCustomSettings(local);
+		assertTrue(manager.getCustomSettingsFor(local).isEmpty());
+		assertEquals(1, manager.getCustomSettingsFor(synced).size());
+	}
+
+	@Test
+	public void addedCustomSettingIsIndexed()
+	{
+		PluginPreset preset = createPreset(1, false, "value");
+		manager.parseCustomSettings(Collections.singletonList(preset));
+
+		PluginSetting setting = new PluginSetting("Other", "other", "value", "customConfig", null);
+		PluginConfig config = preset.getConfig("Plugin").withSetting(setting);
+		preset.putConfig(config);
+		manager.addCustomSetting(preset, config, setting);
+
+		assertEquals(2, manager.getCustomSettingsFor(preset).size());
+		assertEquals(2, manager.getCustomConfigsFor("plugin").size());
+	}
+
+	private static PluginPreset createPreset(long id, boolean local, String value)
+	{
+		PluginPreset preset = new PluginPreset("Preset " + id);
+		preset.setId(id);
+		preset.setLocal(local);
+		preset.setPluginConfigs(new ArrayList<>(Collections.singletonList(createConfig(value))));
+		return preset;
+	}
+
+	private static PluginConfig createConfig(String value)
+	{
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Setting", "key", null, null, null));
+		settings.add(new PluginSetting("Custom", "custom", value, "customConfig", null));
+		return new PluginConfig("Plugin", "plugin", true, settings);
+	}
+}
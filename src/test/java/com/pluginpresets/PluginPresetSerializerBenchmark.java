@@ -0,0 +1,167 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares PluginPresetSerializer against reflective Gson on large "all settings" presets.
+ * Presets are not plain beans, so reflective Gson reads and writes the same json through plain data classes,
+ * which are converted from and to presets like the client would have to.
+ */
+public class PluginPresetSerializerBenchmark
+{
+	private static final int PLUGINS = 300;
+	private static final int SETTINGS_PER_PLUGIN = 40;
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int BATCHES = 10;
+	private static final int ROUNDS = 50;
+
+	public static void main(String[] args)
+	{
+		Gson reflective = new Gson();
+		PluginPresetSerializer serializer = new PluginPresetSerializer(reflective);
+		PluginPreset preset = createLargePreset();
+
+		String json = serializer.toJson(preset);
+		String storedJson = serializer.toJsonWithSummary(preset);
+		System.out.printf("Preset json size: %d KB%n", json.length() / 1024);
+
+		benchmark("Reflective write", () -> reflective.toJson(PresetData.of(preset)));
+		benchmark("Adapter write", () -> serializer.toJson(preset));
+		benchmark("Reflective read", () -> reflective.fromJson(json, PresetData.class).toPreset());
+		benchmark("Adapter read", () -> serializer.fromJson(json));
+		benchmark("Adapter header read", () -> serializer.headerFromJson(new StringReader(storedJson), p -> null));
+	}
+
+	/**
+	 * Prints the time of the fastest batch, which is the least disturbed by other work on the machine.
+	 */
+	private static void benchmark(String name, Runnable runnable)
+	{
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			runnable.run();
+		}
+
+		long fastest = Long.MAX_VALUE;
+		for (int batch = 0; batch < BATCHES; batch++)
+		{
+			long start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+			{
+				runnable.run();
+			}
+			fastest = Math.min(fastest, System.nanoTime() - start);
+		}
+		System.out.printf("%s: %.2f ms/op%n", name, (double) TimeUnit.NANOSECONDS.toMicros(fastest) / ROUNDS / 1000);
+	}
+
+	private static PluginPreset createLargePreset()
+	{
+		PluginPreset preset = new PluginPreset("Benchmark");
+		List<PluginConfig> configs = new ArrayList<>();
+		for (int p = 0; p < PLUGINS; p++)
+		{
+			List<PluginSetting> settings = new ArrayList<>();
+			for (int s = 0; s < SETTINGS_PER_PLUGIN; s++)
+			{
+				settings.add(new PluginSetting("Setting " + s, "setting" + s, String.valueOf(s % 2 == 0), null, null));
+			}
+			configs.add(new PluginConfig("Plugin " + p, "plugin" + p, p % 2 == 0, settings));
+		}
+		preset.setPluginConfigs(configs);
+		return preset;
+	}
+
+	/**
+	 * Plain data classes with the fields of the preset json.
+	 */
+	private static class PresetData
+	{
+		private long id;
+		private String name;
+		private Boolean loadOnFocus;
+		private Boolean autoUpdated;
+		private List<ConfigData> pluginConfigs;
+
+		static PresetData of(PluginPreset preset)
+		{
+			PresetData data = new PresetData();
+			data.id = preset.getId();
+			data.name = preset.getName();
+			data.loadOnFocus = preset.getLoadOnFocus();
+			data.autoUpdated = preset.getAutoUpdated();
+			data.pluginConfigs = new ArrayList<>();
+			for (PluginConfig config : preset.getPluginConfigs())
+			{
+				data.pluginConfigs.add(ConfigData.of(config));
+			}
+			return data;
+		}
+
+		PluginPreset toPreset()
+		{
+			PluginPreset preset = new PluginPreset(name);
+			preset.setId(id);
+			preset.setLoadOnFocus(loadOnFocus);
+			preset.setAutoUpdated(autoUpdated);
+			List<PluginConfig> configs = new ArrayList<>();
+			for (ConfigData config : pluginConfigs)
+			{
+				configs.add(config.toConfig());
+			}
+			preset.setPluginConfigs(configs);
+			return preset;
+		}
+	}
+
+	private static class ConfigData
+	{
+		private String name;
+		private String configName;
+		private Boolean enabled;
+		private List<SettingData> settings;
+
+		static ConfigData of(PluginConfig config)
+		{
+			ConfigData data = new ConfigData();
+			data.name = config.getName();
+			data.configName = config.getConfigName();
+			data.enabled = config.getEnabled();
+			data.settings = new ArrayList<>();
+			for (PluginSetting setting : config.getSettings())
+			{
+				SettingData settingData = new SettingData();
+				settingData.name = setting.getName();
+				settingData.key = setting.getKey();
+				settingData.value = setting.getValue();
+				settingData.customConfigName = setting.getCustomConfigName();
+				settingData.configName = setting.getConfigName();
+				data.settings.add(settingData);
+			}
+			return data;
+		}
+
+		PluginConfig toConfig()
+		{
+			List<PluginSetting> pluginSettings = new ArrayList<>();
+			for (SettingData setting : settings)
+			{
+				pluginSettings.add(new PluginSetting(setting.name, setting.key, setting.value, setting.customConfigName, setting.configName));
+			}
+			return new PluginConfig(name, configName, enabled, pluginSettings);
+		}
+	}
+
+	private static class SettingData
+	{
+		private String name;
+		private String key;
+		private String value;
+		private String customConfigName;
+		private String configName;
+	}
+}
@@ -0,0 +1,131 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.runelite.client.config.Keybind;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PluginPresetSerializerTest
+{
+	/**
+	 * Preset as written by reflective Gson before the type adapters, with a field this version does not know.
+	 */
+	private static final String BASELINE_JSON = "{\"id\":1600000000000,\"name\":\"Bossing\","
+		+ "\"keybind\":{\"keyCode\":65,\"modifiers\":128},\"local\":true,\"loadOnFocus\":false,\"autoUpdated\":true,"
+		+ "\"pluginConfigs\":[{\"name\":\"Plugin\",\"configName\":\"plugin\",\"enabled\":true,\"settings\":["
+		+ "{\"name\":\"Setting\",\"key\":\"key\",\"value\":\"value\"},"
+		+ "{\"name\":\"Custom\",\"key\":\"custom\",\"value\":\"1\",\"customConfigName\":\"customConfig\",\"configName\":\"other\"}]},"
+		+ "{\"name\":\"Other\",\"configName\":\"other\",\"settings\":[]}],\"unknown\":[1,{\"a\":null}]}";
+
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+
+	@Test
+	public void presetIsReadFromBaselineFormat()
+	{
+		PluginPreset preset = serializer.fromJson(BASELINE_JSON);
+
+		assertEquals(1600000000000L, preset.getId());
+		assertEquals("Bossing", preset.getName());
+		assertEquals(new Keybind(KeyEvent.VK_A, InputEvent.CTRL_DOWN_MASK), preset.getKeybind());
+		assertEquals(true, preset.getLocal());
+		assertEquals(false, preset.getLoadOnFocus());
+		assertEquals(true, preset.getAutoUpdated());
+		assertEquals(2, preset.getPluginConfigs().size());
+
+		PluginConfig config = preset.getConfig("Plugin");
+		assertEquals("plugin", config.getConfigName());
+		assertEquals(true, config.getEnabled());
+		assertEquals(Arrays.asList("key", "custom"), keys(config));
+		PluginSetting custom = config.getSetting("custom");
+		assertEquals("1", custom.getValue());
+		assertEquals("customConfig", custom.getCustomConfigName());
+		assertEquals("other", custom.getConfigName());
+		assertNull(config.getSetting("key").getCustomConfigName());
+
+		PluginConfig other = preset.getConfig("Other");
+		assertNull(other.getEnabled());
+		assertTrue(other.getSettings().isEmpty());
+	}
+
+	@Test
+	public void presetIsWrittenInBaselineFormat()
+	{
+		// Local is not written, it is decided by where the preset is stored
+		String expected = BASELINE_JSON.replace("\"local\":true,", "").replace(",\"unknown\":[1,{\"a\":null}]", "");
+
+		assertEquals(expected, serializer.toJson(serializer.fromJson(BASELINE_JSON)));
+	}
+
+	@Test
+	public void presetIsReadBackAsWritten()
+	{
+		PluginPreset preset = new PluginPreset("Preset \"quoted\" ä");
+		preset.setLoadOnFocus(true);
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Null", "null", null, null, null));
+		settings.add(new PluginSetting("Json", "json", "{\"a\":[1,2]}\n", null, null));
+		preset.setPluginConfigs(new ArrayList<>(Arrays.asList(
+			new PluginConfig("Plugin", "plugin", false, settings),
+			new PluginConfig("Enabled only", "enabledOnly", true, new ArrayList<>()))));
+
+		String json = serializer.toJson(preset);
+		PluginPreset read = serializer.fromJson(json);
+
+		assertEquals(json, serializer.toJson(read));
+		assertEquals(preset.getId(), read.getId());
+		assertEquals(preset.getName(), read.getName());
+		assertNull(read.getKeybind());
+		assertNull(read.getAutoUpdated());
+		assertNull(read.getConfig("Plugin").getSetting("null").getValue());
+		assertEquals("{\"a\":[1,2]}\n", read.getConfig("Plugin").getSetting("json").getValue());
+		assertEquals(Arrays.asList("Plugin", "Enabled only"), names(read.getPluginConfigs()));
+	}
+
+	@Test
+	public void presetListIsReadFromBaselineFormat()
+	{
+		List<PluginPreset> presets = serializer.listFromJson("[" + BASELINE_JSON + ",null,{\"id\":2,\"name\":\"Empty\"}]");
+
+		assertEquals(3, presets.size());
+		assertEquals("Bossing", presets.get(0).getName());
+		assertNull(presets.get(1));
+		assertEquals(2, presets.get(2).getId());
+		assertNull(presets.get(2).getLocal());
+		assertFalse(presets.get(2).hasPluginConfigs());
+	}
+
+	@Test(expected = JsonSyntaxException.class)
+	public void malformedIdFails()
+	{
+		serializer.fromJson("{\"id\":\"not a number\",\"name\":\"Preset\"}");
+	}
+
+	@Test(expected = JsonSyntaxException.class)
+	public void truncatedPresetFails()
+	{
+		serializer.fromJson(BASELINE_JSON.substring(0, BASELINE_JSON.length() / 2));
+	}
+
+	private static List<String> keys(PluginConfig config)
+	{
+		List<String> keys = new ArrayList<>();
+		config.getSettings().forEach(s -> keys.add(s.getKey()));
+		return keys;
+	}
+
+	private static List<String> names(List<PluginConfig> configs)
+	{
+		List<String> names = new ArrayList<>();
+		configs.forEach(c -> names.add(c.getName()));
+		return names;
+	}
+}
@@ -0,0 +1,173 @@
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginPresetsPresetEditorTest
+{
+	private final List<PluginPreset> saved = new ArrayList<>();
+	private final List<String> errors = new ArrayList<>();
+	private final PluginPresetsMetrics metrics = new PluginPresetsMetrics();
+	private final PluginPresetsPlugin plugin = new PluginPresetsPlugin()
+	{
+		@Override
+		public void savePreset(PluginPreset preset)
+		{
+			saved.add(preset);
+		}
+
+		@Override
+		public void savePresets()
+		{
+		}
+
+		@Override
+		public void markDirty(PluginPreset preset)
+		{
+		}
+
+		@Override
+		public PluginPresetsMetrics getMetrics()
+		{
+			return metrics;
+		}
+
+		@Override
+		public void renderPanelErrorNotification(String message)
+		{
+			errors.add(message);
+		}
+	};
+
+	private PluginPreset preset;
+	private PluginPresetsPresetEditor editor;
+
+	@Before
+	public void before()
+	{
+		preset = new PluginPreset("Preset");
+		preset.setPluginConfigs(new ArrayList<>());
+		plugin.getPluginPresets().add(preset);
+		editor = new PluginPresetsPresetEditor(plugin, preset, new CurrentConfigurations(null));
+	}
+
+	@Test
+	public void editIsSavedOnce()
+	{
+		editor.addConfigurationToEdited(createConfig("Plugin", true));
+
+		assertNotNull(preset.getConfig("Plugin"));
+		assertEquals(Collections.singletonList(preset), saved);
+	}
+
+	@Test
+	public void nestedEditsAreSavedWhenOutermostEditIsCommitted()
+	{
+		editor.begin();
+		editor.begin();
+		editor.addConfigurationToEdited(createConfig("Plugin", true));
+		editor.commit();
+		editor.addConfigurationToEdited(createConfig("Other", false));
+		assertEquals(0, saved.size());
+
+		editor.commit();
+		assertEquals(1, saved.size());
+		assertNotNull(preset.getConfig("Plugin"));
+		assertNotNull(preset.getConfig("Other"));
+	}
+
+	@Test
+	public void unchangedEditIsNotSaved()
+	{
+		PluginConfig config = createConfig("Plugin", true);
+		editor.addConfigurationToEdited(config);
+		saved.clear();
+
+		editor.addConfigurationToEdited(config);
+		editor.removeConfigurationFromEdited(createConfig("Missing", true));
+		editor.removeEnabledFromEdited(createConfig("Missing", true));
+		assertEquals(0, saved.size());
+
+		editor.begin();
+		editor.removeConfigurationFromEdited(config);
+		editor.addConfigurationToEdited(config);
+		editor.commit();
+		assertEquals(1, saved.size());
+	}
+
+	@Test
+	public void removingEnabledOfConfigWithoutSettingsRemovesConfig()
+	{
+		editor.addConfigurationToEdited(new PluginConfig("Plugin", "plugin", true, new ArrayList<>()));
+		saved.clear();
+
+		editor.removeEnabledFromEdited(createConfig("Plugin", true));
+
+		assertNull(preset.getConfig("Plugin"));
+		assertEquals(1, saved.size());
+	}
+
+	@Test
+	public void presetsThatCanNotBeLoadedAreSkipped()
+	{
+		PluginPreset other = createPreset(2);
+		PluginPreset unavailable = createPreset(3);
+		unavailable.setBodyLoader(p -> null);
+		unavailable.unloadBody();
+		plugin.getPluginPresets().add(other);
+		plugin.getPluginPresets().add(unavailable);
+
+		editor.addConfigurationToPresets(createConfig("Plugin", true));
+		assertNotNull(preset.getConfig("Plugin"));
+		assertNotNull(other.getConfig("Plugin"));
+		assertEquals(Collections.singletonList(preset), saved);
+		assertEquals(1, errors.size());
+
+		editor.removeConfigurationFromPresets(createConfig("Plugin", true));
+		assertNull(preset.getConfig("Plugin"));
+		assertNull(other.getConfig("Plugin"));
+		assertEquals(2, errors.size());
+	}
+
+	@Test
+	public void editedPresetThatCanNotBeLoadedIsNotChanged()
+	{
+		PluginPreset other = createPreset(2);
+		plugin.getPluginPresets().add(other);
+		preset.setBodyLoader(p -> null);
+		preset.unloadBody();
+
+		editor.addConfigurationToPresets(createConfig("Plugin", true));
+
+		assertNull(other.getConfig("Plugin"));
+		assertEquals(0, saved.size());
+		assertEquals(1, errors.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void commitWithoutBeginFails()
+	{
+		editor.commit();
+	}
+
+	private static PluginPreset createPreset(long id)
+	{
+		PluginPreset preset = new PluginPreset("Preset " + id);
+		preset.setId(id);
+		preset.setPluginConfigs(new ArrayList<>());
+		return preset;
+	}
+
+	private static PluginConfig createConfig(String name, boolean enabled)
+	{
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Setting", "key", "value", null, null));
+		return new PluginConfig(name, name.toLowerCase(), enabled, settings);
+	}
+}
@@ -0,0 +1,121 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PluginPresetsStorageTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+	private PluginPresetsStorage storage;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		writePreset("1.json", createPreset(1, "First"));
+		writePreset("2.json", createPreset(2, "Second"));
+		storage = new PluginPresetsStorage(folder.getRoot(), null, new PluginPresetsConfig()
+		{
+		}, new PluginPresetsMetrics(), serializer);
+		assertEquals(2, storage.loadPresets().size());
+	}
+
+	@After
+	public void tearDown()
+	{
+		storage.close();
+	}
+
+	@Test
+	public void onlyChangedFileIsReloaded() throws IOException
+	{
+		writePreset("1.json", createPreset(1, "Changed"));
+
+		PluginPresetsStorage.PresetChanges changes = storage.reloadPresets(Collections.singletonList("1.json"));
+
+		assertEquals(1, changes.getLoadedPresets().size());
+		PluginPreset preset = changes.getLoadedPresets().get(0);
+		assertEquals("Changed", preset.getName());
+		assertEquals(true, preset.getLocal());
+		assertEquals("value", preset.getConfig("Plugin").getSetting("key").getValue());
+		assertTrue(changes.getRemovedIds().isEmpty());
+	}
+
+	@Test
+	public void addedAndDeletedFilesAreReloaded() throws IOException
+	{
+		writePreset("3.json", createPreset(3, "Third"));
+		Files.delete(new File(folder.getRoot(), "2.json").toPath());
+
+		PluginPresetsStorage.PresetChanges changes = storage.reloadPresets(Arrays.asList("2.json", "3.json"));
+
+		assertEquals(1, changes.getLoadedPresets().size());
+		assertEquals(3, changes.getLoadedPresets().get(0).getId());
+		assertEquals(Collections.singleton(2L), changes.getRemovedIds());
+	}
+
+	@Test
+	public void presetWithChangedIdReplacesPresetOfFile() throws IOException
+	{
+		writePreset("1.json", createPreset(5, "Moved"));
+
+		PluginPresetsStorage.PresetChanges changes = storage.reloadPresets(Collections.singletonList("1.json"));
+
+		assertEquals(5, changes.getLoadedPresets().get(0).getId());
+		assertEquals(Collections.singleton(1L), changes.getRemovedIds());
+	}
+
+	@Test
+	public void malformedFileRemovesItsPreset() throws IOException
+	{
+		Files.write(new File(folder.getRoot(), "1.json").toPath(), "{\"id\":1,".getBytes(StandardCharsets.UTF_8));
+
+		PluginPresetsStorage.PresetChanges changes = storage.reloadPresets(Collections.singletonList("1.json"));
+		assertTrue(changes.getLoadedPresets().isEmpty());
+		assertEquals(Collections.singleton(1L), changes.getRemovedIds());
+
+		writePreset("1.json", createPreset(1, "Fixed"));
+		changes = storage.reloadPresets(Collections.singletonList("1.json"));
+		assertEquals("Fixed", changes.getLoadedPresets().get(0).getName());
+	}
+
+	@Test
+	public void storageFilesAreNotReloaded() throws IOException
+	{
+		PluginPresetsStorage.PresetChanges changes = storage.reloadPresets(Arrays.asList("lock", "index", "1.json.tmp"));
+
+		assertTrue(changes.getLoadedPresets().isEmpty());
+		assertTrue(changes.getRemovedIds().isEmpty());
+	}
+
+	private void writePreset(String fileName, PluginPreset preset) throws IOException
+	{
+		Files.write(new File(folder.getRoot(), fileName).toPath(), serializer.toJson(preset).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static PluginPreset createPreset(long id, String name)
+	{
+		PluginPreset preset = new PluginPreset(name);
+		preset.setId(id);
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Setting", "key", "value", null, null));
+		preset.setPluginConfigs(new ArrayList<>(Collections.singletonList(new PluginConfig("Plugin", "plugin", true, settings))));
+		return preset;
+	}
+}
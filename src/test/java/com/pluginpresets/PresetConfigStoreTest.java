@@ -0,0 +1,216 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PresetConfigStoreTest
+{
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+	private final Map<String, String> config = new HashMap<>();
+	private final List<String> writes = new ArrayList<>();
+
+	@Test
+	public void savedPresetsAreLoadedBack()
+	{
+		PresetConfigStore store = createStore();
+		store.loadPresets();
+		assertTrue(store.savePresets(Arrays.asList(createPreset(1, "First"), createPreset(2, "Second"))));
+		assertEquals("1,2", config.get("presetIds"));
+
+		List<PluginPreset> loaded = createStore().loadPresets();
+		assertEquals(2, loaded.size());
+		assertEquals("First", loaded.get(0).getName());
+		assertEquals(false, loaded.get(0).getLocal());
+		assertEquals("value", loaded.get(1).getConfig("Plugin").getSetting("key").getValue());
+	}
+
+	@Test
+	public void onlyChangedPresetsAreWritten()
+	{
+		PresetConfigStore store = createStore();
+		store.loadPresets();
+		PluginPreset first = createPreset(1, "First");
+		PluginPreset second = createPreset(2, "Second");
+		store.savePresets(Arrays.asList(first, second));
+		writes.clear();
+
+		store.markDirty(first);
+		assertFalse(store.savePresets(Arrays.asList(first, second)));
+
+		second.setName("Changed");
+		store.markDirty(second);
+		assertTrue(store.savePresets(Arrays.asList(first, second)));
+		assertEquals(Collections.singletonList("preset_2"), writes);
+
+		writes.clear();
+		store.savePresets(Collections.singletonList(first));
+		assertEquals(Arrays.asList("preset_2", "presetIds"), writes);
+		assertNull(config.get("preset_2"));
+	}
+
+	@Test
+	public void legacyPresetsAreMovedToOwnKeys()
+	{
+		config.put("presets", "[" + serializer.toJson(createPreset(1, "First")) + ","
+			+ serializer.toJson(createPreset(2, "Second")) + "]");
+
+		PresetConfigStore store = createStore();
+		List<PluginPreset> loaded = store.loadPresets();
+		assertEquals(2, loaded.size());
+		assertEquals(false, loaded.get(1).getLocal());
+
+		assertTrue(store.savePresets(loaded));
+		assertNull(config.get("presets"));
+		assertEquals("1,2", config.get("presetIds"));
+		assertEquals(2, createStore().loadPresets().size());
+	}
+
+	@Test
+	public void unreadableLegacyPresetsAreKept()
+	{
+		String legacy = "[" + serializer.toJson(createPreset(1, "First"));
+		config.put("presets", legacy);
+
+		PresetConfigStore store = createStore();
+		assertTrue(store.loadPresets().isEmpty());
+		store.savePresets(Collections.singletonList(createPreset(2, "Second")));
+		assertEquals(legacy, config.get("presets"));
+	}
+
+	@Test
+	public void legacyPresetsWithMalformedPresetAreKept()
+	{
+		String legacy = "[" + serializer.toJson(createPreset(1, "First")) + ",{\"id\":2},null]";
+		config.put("presets", legacy);
+
+		PresetConfigStore store = createStore();
+		List<PluginPreset> loaded = store.loadPresets();
+		assertEquals(1, loaded.size());
+
+		store.savePresets(loaded);
+		assertEquals(legacy, config.get("presets"));
+		assertTrue(config.containsKey("preset_1"));
+	}
+
+	@Test
+	public void unreadablePresetStaysInIndex()
+	{
+		PresetConfigStore store = createStore();
+		store.loadPresets();
+		store.savePresets(Arrays.asList(createPreset(1, "First"), createPreset(2, "Second")));
+		config.put("preset_2", "deflate:AAAAAAAA");
+
+		store = createStore();
+		List<PluginPreset> loaded = store.loadPresets();
+		assertEquals(1, loaded.size());
+
+		loaded.add(createPreset(3, "Third"));
+		store.savePresets(loaded);
+		assertEquals("1,3,2", config.get("presetIds"));
+		assertEquals("deflate:AAAAAAAA", config.get("preset_2"));
+
+		// A preset saved with the same id replaces the unreadable one
+		loaded.add(createPreset(2, "Replaced"));
+		store.savePresets(loaded);
+		assertEquals("1,3,2", config.get("presetIds"));
+		assertEquals(3, createStore().loadPresets().size());
+	}
+
+	@Test
+	public void nothingIsSavedAfterProfileChange()
+	{
+		PresetConfigStore store = createStore();
+		store.loadPresets();
+		PluginPreset preset = createPreset(1, "First");
+		store.markDirty(preset);
+		store.profileChanged();
+
+		assertFalse(store.savePresets(Collections.singletonList(preset)));
+		assertTrue(config.isEmpty());
+
+		store.loadPresets();
+		assertTrue(store.savePresets(Collections.singletonList(preset)));
+	}
+	@Test
+	public void shortJsonIsStoredPlain() throws IOException
+	{
+		String json = "{\"id\":1,\"name\":\"Preset\",\"pluginConfigs\":[]}";
+		assertEquals(json, PresetConfigStore.encode(json));
+		assertEquals(json, PresetConfigStore.decode(json));
+	}
+
+	@Test
+	public void longJsonIsStoredDeflated() throws IOException
+	{
+		StringBuilder json = new StringBuilder("{\"id\":1,\"name\":\"Preset ä\",\"pluginConfigs\":[");
+		for (int i = 0; i < 100; i++)
+		{
+			json.append(i == 0 ? "" : ",").append("{\"name\":\"Plugin ").append(i).append("\",\"settings\":[]}");
+		}
+		json.append("]}");
+
+		String encoded = PresetConfigStore.encode(json.toString());
+		assertTrue(encoded.startsWith("deflate:"));
+		assertTrue(encoded.length() < json.length());
+		assertEquals(json.toString(), PresetConfigStore.decode(encoded));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidBase64Fails() throws IOException
+	{
+		PresetConfigStore.decode("deflate:not base64!");
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidDeflatedDataFails() throws IOException
+	{
+		PresetConfigStore.decode("deflate:AAAAAAAA");
+	}
+
+	private PresetConfigStore createStore()
+	{
+		return new PresetConfigStore(null, serializer, new PluginPresetsMetrics())
+		{
+			@Override
+			String getConfiguration(String key)
+			{
+				return config.get(key);
+			}
+
+			@Override
+			void setConfiguration(String key, String value)
+			{
+				writes.add(key);
+				config.put(key, value);
+			}
+
+			@Override
+			void unsetConfiguration(String key)
+			{
+				writes.add(key);
+				config.remove(key);
+			}
+		};
+	}
+
+	private static PluginPreset createPreset(long id, String name)
+	{
+		PluginPreset preset = new PluginPreset(name);
+		preset.setId(id);
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Setting", "key", "value", null, null));
+		preset.setPluginConfigs(new ArrayList<>(Collections.singletonList(new PluginConfig("Plugin", "plugin", true, settings))));
+		return preset;
+	}
+}
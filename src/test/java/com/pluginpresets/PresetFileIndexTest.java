@@ -0,0 +1,132 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PresetFileIndexTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+	private File file;
+
+	@Before
+	public void setUp()
+	{
+		file = new File(folder.getRoot(), "index.json");
+	}
+
+	@Test
+	public void writtenEntriesAreReadBack()
+	{
+		PluginPreset preset = createPreset();
+		preset.setSummary(PresetSummary.of(preset.getPluginConfigs()));
+		PresetFileIndex index = new PresetFileIndex(file, serializer);
+		index.put(new PresetFileIndex.Entry("preset.json", 10, 20, 30, PresetFileIndex.copyHeader(preset)));
+		index.put(new PresetFileIndex.Entry("failed.json", 1, 2, 3, null));
+		index.write();
+
+		PresetFileIndex read = new PresetFileIndex(file, serializer);
+		read.read();
+
+		PresetFileIndex.Entry entry = read.get("preset.json");
+		assertNotNull(entry);
+		assertTrue(entry.matches(10, 20));
+		assertEquals(30, entry.getHash());
+		assertFalse(entry.isFailed());
+		PluginPreset header = entry.getHeader();
+		assertEquals(preset.getId(), header.getId());
+		assertEquals("Preset", header.getName());
+		assertEquals(true, header.getLoadOnFocus());
+		assertNull(header.getPluginConfigs());
+		assertEquals(preset.getSummary().getConfigs().get("Plugin").getValuesHash(),
+			header.getSummary().getConfigs().get("Plugin").getValuesHash());
+
+		assertTrue(read.get("failed.json").isFailed());
+		assertNull(read.get("missing.json"));
+	}
+
+	@Test
+	public void changedFileDoesNotMatch()
+	{
+		PresetFileIndex.Entry entry = new PresetFileIndex.Entry("preset.json", 10, 20, 30, null);
+		assertTrue(entry.matches(10, 20));
+		assertFalse(entry.matches(11, 20));
+		assertFalse(entry.matches(10, 21));
+	}
+
+	@Test
+	public void indexIsWrittenOnlyWhenChanged() throws IOException
+	{
+		PresetFileIndex index = new PresetFileIndex(file, serializer);
+		index.write();
+		assertFalse(file.exists());
+
+		PresetFileIndex.Entry entry = new PresetFileIndex.Entry("preset.json", 10, 20, 30, null);
+		index.put(entry);
+		index.write();
+		assertTrue(file.exists());
+
+		Files.write(file.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+		index.put(new PresetFileIndex.Entry("preset.json", 10, 20, 30, null));
+		index.retain(Collections.singletonList("preset.json"));
+		index.write();
+		assertEquals("changed", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+		index.retain(Collections.emptyList());
+		index.write();
+		index.read();
+		assertNull(index.get("preset.json"));
+	}
+
+	@Test
+	public void indexOfOtherVersionIsIgnored() throws IOException
+	{
+		Files.write(file.toPath(), "{\"version\":2,\"files\":[{\"file\":\"preset.json\",\"size\":1,\"lastModified\":2,\"hash\":3}]}"
+			.getBytes(StandardCharsets.UTF_8));
+
+		PresetFileIndex index = new PresetFileIndex(file, serializer);
+		index.read();
+		assertNull(index.get("preset.json"));
+	}
+
+	@Test
+	public void unreadableIndexIsIgnored() throws IOException
+	{
+		Files.write(file.toPath(), "{\"version\":3,\"files\":[{\"file\":".getBytes(StandardCharsets.UTF_8));
+
+		PresetFileIndex index = new PresetFileIndex(file, serializer);
+		index.read();
+		assertNull(index.get("preset.json"));
+
+		Files.write(file.toPath(), "{\"version\":3,\"files\":[{\"size\":1}]}".getBytes(StandardCharsets.UTF_8));
+		index.read();
+		assertNull(index.get("preset.json"));
+	}
+
+	private static PluginPreset createPreset()
+	{
+		PluginPreset preset = new PluginPreset("Preset");
+		preset.setLoadOnFocus(true);
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting("Setting", "key", "value", null, null));
+		preset.setPluginConfigs(new ArrayList<>(Collections.singletonList(new PluginConfig("Plugin", "plugin", true, settings))));
+		return preset;
+	}
+}
@@ -0,0 +1,205 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PresetLogStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+	private File file;
+
+	@Before
+	public void setUp()
+	{
+		file = new File(folder.getRoot(), "presets.db");
+	}
+
+	@Test
+	public void appendedPresetsAreReadBack() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "First", 2), createPreset(2, "Second", 3)), Collections.emptyList());
+
+		List<PluginPreset> headers = createStore().load();
+		assertEquals(2, headers.size());
+		for (PluginPreset header : headers)
+		{
+			assertTrue(header.hasPluginConfigs());
+		}
+
+		PluginPreset second = store.read(2);
+		assertNotNull(second);
+		assertEquals("Second", second.getName());
+		assertEquals(3, second.getPluginConfigs().size());
+		assertEquals("value1", second.getConfig("Plugin 1").getSetting("key1").getValue());
+	}
+
+	@Test
+	public void latestRecordOfPresetWins() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "Before", 1)), Collections.emptyList());
+		store.write(payloads(createPreset(1, "After", 4)), Collections.emptyList());
+
+		List<PluginPreset> headers = createStore().load();
+		assertEquals(1, headers.size());
+		assertEquals("After", headers.get(0).getName());
+		assertEquals(4, store.read(1).getPluginConfigs().size());
+	}
+
+	@Test
+	public void tombstoneRemovesPreset() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "Kept", 1), createPreset(2, "Removed", 1)), Collections.emptyList());
+
+		PresetLogStore otherClient = createStore();
+		otherClient.load();
+
+		store.write(Collections.emptyMap(), Collections.singletonList(2L));
+		assertFalse(store.contains(2));
+		assertNull(store.read(2));
+
+		PluginPresetsStorage.PresetChanges changes = otherClient.reload();
+		assertTrue(changes.getLoadedPresets().isEmpty());
+		assertEquals(Collections.singleton(2L), changes.getRemovedIds());
+
+		List<PluginPreset> headers = createStore().load();
+		assertEquals(1, headers.size());
+		assertEquals("Kept", headers.get(0).getName());
+	}
+
+	@Test
+	public void truncatedTrailingRecordIsIgnoredAndOverwritten() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "Complete", 1)), Collections.emptyList());
+		long completeLength = file.length();
+		store.write(payloads(createPreset(2, "Truncated", 1)), Collections.emptyList());
+
+		// Cut the second record in half, as if the client crashed while appending it
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.setLength(completeLength + (file.length() - completeLength) / 2);
+		}
+
+		PresetLogStore reopened = createStore();
+		List<PluginPreset> headers = reopened.load();
+		assertEquals(1, headers.size());
+		assertEquals("Complete", headers.get(0).getName());
+		assertFalse(reopened.isEmpty());
+
+		reopened.write(payloads(createPreset(3, "Appended", 1)), Collections.emptyList());
+		assertEquals(2, createStore().load().size());
+		assertEquals("Appended", reopened.read(3).getName());
+	}
+
+	@Test
+	public void recordWithWrongChecksumEndsTheLog() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "Intact", 1)), Collections.emptyList());
+		long intactLength = file.length();
+		store.write(payloads(createPreset(2, "Corrupted", 1)), Collections.emptyList());
+
+		// Flip a byte in the payload of the second record
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			long position = intactLength + (file.length() - intactLength) / 2;
+			raf.seek(position);
+			int value = raf.read();
+			raf.seek(position);
+			raf.write(value ^ 0xFF);
+		}
+
+		assertNull(store.read(2));
+
+		PresetLogStore reopened = createStore();
+		List<PluginPreset> headers = reopened.load();
+		assertEquals(1, headers.size());
+		assertEquals("Intact", headers.get(0).getName());
+		assertFalse(reopened.contains(2));
+	}
+
+	@Test
+	public void compactionKeepsOnlyLatestRecords() throws IOException
+	{
+		PresetLogStore store = createStore();
+		store.write(payloads(createPreset(1, "Other", 1)), Collections.emptyList());
+
+		PresetLogStore otherClient = createStore();
+		otherClient.load();
+
+		// Rewrite a large preset until superseded records take up most of the file
+		for (int i = 0; i < 8; i++)
+		{
+			store.write(payloads(createPreset(2, "Large " + i, 200)), Collections.emptyList());
+		}
+
+		long recordLength = payloads(createPreset(2, "Large 7", 200)).get(2L).length;
+		assertTrue("file was not compacted", file.length() < 3 * recordLength);
+		assertFalse(new File(folder.getRoot(), "presets.db.tmp").exists());
+
+		assertEquals("Large 7", store.read(2).getName());
+		assertEquals("Other", store.read(1).getName());
+
+		// The other client notices the new generation and reads the file again
+		PluginPresetsStorage.PresetChanges changes = otherClient.reload();
+		assertTrue(changes.getRemovedIds().isEmpty());
+		assertEquals(2, changes.getLoadedPresets().size());
+		assertEquals("Large 7", otherClient.read(2).getName());
+	}
+
+	private PresetLogStore createStore()
+	{
+		return new PresetLogStore(file, serializer, preset -> new ArrayList<>());
+	}
+
+	private Map<Long, byte[]> payloads(PluginPreset... presets)
+	{
+		Map<Long, byte[]> payloads = new LinkedHashMap<>();
+		for (PluginPreset preset : presets)
+		{
+			payloads.put(preset.getId(), serializer.toJson(preset).getBytes(StandardCharsets.UTF_8));
+		}
+		return payloads;
+	}
+
+	private static PluginPreset createPreset(long id, String name, int plugins)
+	{
+		PluginPreset preset = new PluginPreset(name);
+		preset.setId(id);
+		List<PluginConfig> configs = new ArrayList<>();
+		for (int p = 0; p < plugins; p++)
+		{
+			List<PluginSetting> settings = new ArrayList<>();
+			for (int s = 0; s < 20; s++)
+			{
+				settings.add(new PluginSetting("Setting " + s, "key" + s, "value" + s, null, null));
+			}
+			configs.add(new PluginConfig("Plugin " + p, "plugin" + p, true, settings));
+		}
+		preset.setPluginConfigs(configs);
+		return preset;
+	}
+}
@@ -0,0 +1,162 @@
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PresetSummaryTest
+{
+	private final PluginPresetSerializer serializer = new PluginPresetSerializer(new Gson());
+	private final Random random = new Random(1);
+
+	@Test
+	public void summaryMatchesLikeLoadedConfigs()
+	{
+		for (int i = 0; i < 2000; i++)
+		{
+			List<PluginConfig> current = new ArrayList<>();
+			List<PluginConfig> preset = new ArrayList<>();
+			for (int p = 0; p < 3; p++)
+			{
+				PluginConfig currentConfig = createConfig("Plugin " + p, random.nextBoolean());
+				current.add(currentConfig);
+				if (random.nextInt(4) > 0)
+				{
+					preset.add(changeRandomly(currentConfig));
+				}
+			}
+
+			CurrentConfigurations currentConfigurations = createCurrentConfigurations(current);
+			PluginPreset loaded = createPreset(preset);
+			AtomicInteger loads = new AtomicInteger();
+			PluginPreset unloaded = createUnloadedPreset(preset, loads);
+
+			assertEquals(loaded.match(currentConfigurations), unloaded.match(currentConfigurations));
+			assertEquals(loaded.isEmpty(), unloaded.isEmpty());
+			assertEquals(loaded.canBeDisabled(), unloaded.canBeDisabled());
+		}
+	}
+
+	@Test
+	public void presetWithSameSettingsIsMatchedWithoutLoading()
+	{
+		PluginConfig currentConfig = createConfig("Plugin", true);
+		CurrentConfigurations currentConfigurations = createCurrentConfigurations(Collections.singletonList(currentConfig));
+
+		AtomicInteger loads = new AtomicInteger();
+		PluginPreset matching = createUnloadedPreset(Collections.singletonList(currentConfig), loads);
+		assertTrue(matching.match(currentConfigurations));
+
+		PluginConfig changed = currentConfig.withSetting(new PluginSetting("Setting 0", "key0", "changed", null, null));
+		PluginPreset differing = createUnloadedPreset(Collections.singletonList(changed), loads);
+		assertFalse(differing.match(currentConfigurations));
+
+		PluginPreset disabled = createUnloadedPreset(Collections.singletonList(currentConfig.withEnabled(false)), loads);
+		assertFalse(disabled.match(currentConfigurations));
+
+		assertEquals(0, loads.get());
+	}
+
+	@Test
+	public void presetWithFewerSettingsIsMatchedByLoading()
+	{
+		PluginConfig currentConfig = createConfig("Plugin", true);
+		CurrentConfigurations currentConfigurations = createCurrentConfigurations(Collections.singletonList(currentConfig));
+
+		AtomicInteger loads = new AtomicInteger();
+		PluginPreset partial = createUnloadedPreset(Collections.singletonList(currentConfig.withoutSetting("key0")), loads);
+		assertNull(partial.getSummary().match(currentConfigurations));
+		assertTrue(partial.match(currentConfigurations));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void summaryIsReadWithHeaderWithoutConfigs()
+	{
+		PluginConfig config = createConfig("Plugin", true)
+			.withSetting(new PluginSetting("Custom", "custom", "value", "customConfig", null));
+		PluginPreset preset = createPreset(Arrays.asList(config, createConfig("Other", false)));
+
+		AtomicInteger loads = new AtomicInteger();
+		PluginPreset header = serializer.headerFromJson(new StringReader(serializer.toJsonWithSummary(preset)), p ->
+		{
+			loads.incrementAndGet();
+			return null;
+		});
+
+		assertNotNull(header.getSummary());
+		assertEquals(2, header.getSummary().getConfigs().size());
+		assertEquals(config.getSummary().getValuesHash(), header.getSummary().getConfigs().get("Plugin").getValuesHash());
+		assertEquals(1, header.getCustomSettingConfigs().size());
+		assertEquals("custom", header.getCustomSettingConfigs().get(0).getSettings().get(0).getKey());
+		assertTrue(header.canBeDisabled());
+		assertEquals(0, loads.get());
+
+		// The summary is not part of the preset read in full
+		assertEquals(serializer.toJson(preset), serializer.toJson(serializer.fromJson(serializer.toJsonWithSummary(preset))));
+	}
+
+	private PluginConfig changeRandomly(PluginConfig config)
+	{
+		switch (random.nextInt(6))
+		{
+			case 0:
+				return config.withSetting(new PluginSetting("Setting 0", "key0", "changed", null, null));
+			case 1:
+				return config.withoutSetting("key1");
+			case 2:
+				return config.withEnabled(random.nextBoolean() ? null : !config.getEnabled());
+			case 3:
+				return config.withSetting(new PluginSetting("Setting 2", "key2", null, null, null));
+			default:
+				return config;
+		}
+	}
+
+	private static PluginConfig createConfig(String name, boolean enabled)
+	{
+		List<PluginSetting> settings = new ArrayList<>();
+		for (int s = 0; s < 4; s++)
+		{
+			settings.add(new PluginSetting("Setting " + s, "key" + s, "value" + s, null, null));
+		}
+		return new PluginConfig(name, name.toLowerCase(), enabled, settings);
+	}
+
+	private static CurrentConfigurations createCurrentConfigurations(List<PluginConfig> configs)
+	{
+		CurrentConfigurations currentConfigurations = new CurrentConfigurations(null);
+		currentConfigurations.setPluginConfigs(configs);
+		return currentConfigurations;
+	}
+
+	private static PluginPreset createPreset(List<PluginConfig> configs)
+	{
+		PluginPreset preset = new PluginPreset("Preset");
+		preset.setPluginConfigs(new ArrayList<>(configs));
+		return preset;
+	}
+
+	private static PluginPreset createUnloadedPreset(List<PluginConfig> configs, AtomicInteger loads)
+	{
+		PluginPreset preset = createPreset(configs);
+		preset.setBodyLoader(p ->
+		{
+			loads.incrementAndGet();
+			return new ArrayList<>(configs);
+		});
+		preset.unloadBody();
+		return preset;
+	}
+}